@@ -0,0 +1,218 @@
+package com.licensemanager;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Debug-only benchmark comparing per-operation latency of the old open/close-per-call
+ * database access against the shared WAL helper with cached statements.
+ *
+ * Run with: adb shell am broadcast -n com.licensemanager/.DatabaseBenchmarkReceiver
+ * and read the results from logcat (tag DatabaseBenchmark). Uses its own database
+ * files, so the real roster is never touched. This is an optional on-device check;
+ * the budgeted scaling suite is DatabaseScaleTest, which runs with ./gradlew check.
+ */
+public class DatabaseBenchmarkReceiver extends BroadcastReceiver {
+    private static final String TAG = "DatabaseBenchmark";
+    private static final int ROWS = 10_000;
+    private static final int OPERATIONS = 500;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final PendingResult result = goAsync();
+        final Context appContext = context.getApplicationContext();
+
+        new Thread(() -> {
+            try {
+                runLegacy(appContext);
+                runCurrent(appContext);
+            } catch (Exception e) {
+                Log.e(TAG, "Benchmark failed", e);
+            } finally {
+                result.finish();
+            }
+        }, TAG).start();
+    }
+
+    private void runLegacy(Context context) {
+        String name = "benchmark_legacy.db";
+        context.deleteDatabase(name);
+        LegacyHelper helper = new LegacyHelper(context, name);
+        seed(helper.getWritableDatabase(), false);
+        helper.getWritableDatabase().close();
+
+        Random random = new Random(42);
+        long start = SystemClock.elapsedRealtimeNanos();
+        long[] ids = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            ids[i] = helper.insert(sample(random, i));
+        }
+        report("legacy", "insertLicense", start);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATIONS; i++) {
+            helper.get(1 + random.nextInt(ROWS));
+        }
+        report("legacy", "getLicense", start);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATIONS; i++) {
+            License license = sample(random, i);
+            license.setId(ids[i]);
+            helper.update(license);
+        }
+        report("legacy", "updateLicense", start);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATIONS; i++) {
+            helper.delete(ids[i]);
+        }
+        report("legacy", "deleteLicense", start);
+
+        helper.close();
+        context.deleteDatabase(name);
+    }
+
+    private void runCurrent(Context context) {
+        String name = "benchmark_current.db";
+        context.deleteDatabase(name);
+        DatabaseHelper helper = new DatabaseHelper(context, name);
+        seed(helper.getWritableDatabase(), true);
+
+        Random random = new Random(42);
+        long start = SystemClock.elapsedRealtimeNanos();
+        long[] ids = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            ids[i] = helper.insertLicense(sample(random, i));
+        }
+        report("current", "insertLicense", start);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATIONS; i++) {
+            helper.getLicense(1 + random.nextInt(ROWS));
+        }
+        report("current", "getLicense", start);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATIONS; i++) {
+            License license = sample(random, i);
+            license.setId(ids[i]);
+            helper.updateLicense(license);
+        }
+        report("current", "updateLicense", start);
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATIONS; i++) {
+            helper.deleteLicense(ids[i]);
+        }
+        report("current", "deleteLicense", start);
+
+        helper.close();
+        context.deleteDatabase(name);
+    }
+
+    private static void seed(SQLiteDatabase db, boolean withExpiryDay) {
+        Random random = new Random(7);
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                License license = sample(random, i);
+                ContentValues values = new ContentValues();
+                values.put(DatabaseHelper.COLUMN_NAME, license.getName());
+                values.put(DatabaseHelper.COLUMN_TYPE, license.getType());
+                values.put(DatabaseHelper.COLUMN_EXPIRY_DATE, license.getExpiryDate());
+                values.put(DatabaseHelper.COLUMN_DESCRIPTION, license.getDescription());
+                if (withExpiryDay) {
+                    values.put(DatabaseHelper.COLUMN_EXPIRY_DAY, EpochDay.parse(license.getExpiryDate()));
+                }
+                db.insert(DatabaseHelper.TABLE_LICENSES, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static License sample(Random random, int i) {
+        String[] types = {"DGSC", "Shotfirer", "Forklift"};
+        String expiry = String.format(Locale.US, "%04d-%02d-%02d",
+                2024 + random.nextInt(4), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        return new License("Employee " + i, types[random.nextInt(types.length)], expiry, "Benchmark row " + i);
+    }
+
+    private static void report(String mode, String operation, long startNanos) {
+        long elapsed = SystemClock.elapsedRealtimeNanos() - startNanos;
+        Log.i(TAG, String.format(Locale.US, "%-8s %-14s %8.1f us/op (%d ops, %d rows)",
+                mode, operation, elapsed / 1000.0 / OPERATIONS, OPERATIONS, ROWS));
+    }
+
+    // Reproduces the original DatabaseHelper access pattern: reopen, recompile, close
+    private static class LegacyHelper extends SQLiteOpenHelper {
+        LegacyHelper(Context context, String name) {
+            super(context, name, null, 1);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + DatabaseHelper.TABLE_LICENSES + "(" +
+                    DatabaseHelper.COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    DatabaseHelper.COLUMN_NAME + " TEXT NOT NULL," +
+                    DatabaseHelper.COLUMN_TYPE + " TEXT NOT NULL," +
+                    DatabaseHelper.COLUMN_EXPIRY_DATE + " TEXT NOT NULL," +
+                    DatabaseHelper.COLUMN_DESCRIPTION + " TEXT)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {}
+
+        long insert(License license) {
+            SQLiteDatabase db = getWritableDatabase();
+            long id = db.insert(DatabaseHelper.TABLE_LICENSES, null, values(license));
+            db.close();
+            return id;
+        }
+
+        void get(long id) {
+            SQLiteDatabase db = getReadableDatabase();
+            Cursor cursor = db.query(DatabaseHelper.TABLE_LICENSES, null,
+                    DatabaseHelper.COLUMN_ID + "=?", new String[]{String.valueOf(id)},
+                    null, null, null);
+            cursor.moveToFirst();
+            cursor.close();
+            db.close();
+        }
+
+        void update(License license) {
+            SQLiteDatabase db = getWritableDatabase();
+            db.update(DatabaseHelper.TABLE_LICENSES, values(license),
+                    DatabaseHelper.COLUMN_ID + "=?", new String[]{String.valueOf(license.getId())});
+            db.close();
+        }
+
+        void delete(long id) {
+            SQLiteDatabase db = getWritableDatabase();
+            db.delete(DatabaseHelper.TABLE_LICENSES,
+                    DatabaseHelper.COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+            db.close();
+        }
+
+        private static ContentValues values(License license) {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_NAME, license.getName());
+            values.put(DatabaseHelper.COLUMN_TYPE, license.getType());
+            values.put(DatabaseHelper.COLUMN_EXPIRY_DATE, license.getExpiryDate());
+            values.put(DatabaseHelper.COLUMN_DESCRIPTION, license.getDescription());
+            return values;
+        }
+    }
+}
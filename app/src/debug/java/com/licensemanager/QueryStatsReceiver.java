@@ -0,0 +1,41 @@
+package com.licensemanager;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Debug-only access to the QueryStats table from adb:
+ *
+ *   adb shell am broadcast -n com.licensemanager/.QueryStatsReceiver --es command dump
+ *
+ * Commands are dump (the default), reset, enable and disable; --ei slow_ms N changes
+ * the slow-query threshold. The table is written to logcat (tag QueryStats) and
+ * returned as the broadcast result data.
+ */
+public class QueryStatsReceiver extends BroadcastReceiver {
+    private static final String TAG = "QueryStats";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String command = intent.getStringExtra("command");
+        if (intent.hasExtra("slow_ms")) {
+            QueryStats.setSlowQueryThresholdMillis(intent.getIntExtra("slow_ms", 0));
+        }
+
+        if ("reset".equals(command)) {
+            QueryStats.reset();
+            setResultData("reset");
+        } else if ("enable".equals(command) || "disable".equals(command)) {
+            QueryStats.setEnabled("enable".equals(command));
+            setResultData(command + "d");
+        } else {
+            String table = QueryStats.dump();
+            for (String line : table.split("\n")) {
+                Log.i(TAG, line);
+            }
+            setResultData((QueryStats.isEnabled() ? "" : "(collection disabled)\n") + table);
+        }
+    }
+}
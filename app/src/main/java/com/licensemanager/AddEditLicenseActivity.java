@@ -15,12 +15,10 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Locale;
 
 public class AddEditLicenseActivity extends AppCompatActivity {
-    private DatabaseHelper databaseHelper;
+    private LicenseRepository repository;
     private License currentLicense;
     private boolean isEditMode = false;
     
@@ -75,7 +73,7 @@ public class AddEditLicenseActivity extends AppCompatActivity {
     }
 
     private void setupDatabase() {
-        databaseHelper = new DatabaseHelper(this);
+        repository = LicenseRepository.getInstance(this);
     }
 
     private void setupToolbar() {
@@ -103,39 +101,25 @@ public class AddEditLicenseActivity extends AppCompatActivity {
         if (licenseId != -1) {
             // Edit mode
             isEditMode = true;
-            currentLicense = databaseHelper.getLicense(licenseId);
-            
-            if (currentLicense != null) {
-                nameEditText.setText(currentLicense.getName());
-                
-                // Set the license type in dropdown
-                String licenseType = currentLicense.getType();
-                String[] licenseTypes = getResources().getStringArray(R.array.license_types);
-                boolean isStandardType = false;
-                
-                for (String type : licenseTypes) {
-                    if (type.equals(licenseType)) {
-                        typeDropdown.setText(licenseType, false);
-                        isStandardType = true;
-                        break;
-                    }
+            toolbar.setTitle(R.string.edit_license);
+            // Nothing can be saved or deleted until the row has been read
+            saveButton.setEnabled(false);
+            deleteButton.setVisibility(View.GONE);
+            repository.getLicense(licenseId, new LicenseRepository.Callback<License>() {
+                @Override
+                public void onResult(License license) {
+                    if (isFinishing()) return;
+                    currentLicense = license;
+                    saveButton.setEnabled(true);
+                    showLicense();
                 }
-                
-                // If it's not a standard type, set it as "Other" and show custom field
-                if (!isStandardType) {
-                    typeDropdown.setText("Other", false);
-                    customTypeLayout.setVisibility(View.VISIBLE);
-                    customTypeEditText.setText(licenseType);
-                } else {
-                    customTypeLayout.setVisibility(View.GONE);
+
+                @Override
+                public void onError(Exception e) {
+                    Toast.makeText(AddEditLicenseActivity.this, "Failed to load employee", Toast.LENGTH_SHORT).show();
+                    finish();
                 }
-                
-                expiryEditText.setText(currentLicense.getExpiryDate());
-                descriptionEditText.setText(currentLicense.getDescription());
-                
-                toolbar.setTitle(R.string.edit_license);
-                deleteButton.setVisibility(View.VISIBLE);
-            }
+            });
         } else {
             // Add mode
             isEditMode = false;
@@ -144,27 +128,52 @@ public class AddEditLicenseActivity extends AppCompatActivity {
         }
     }
 
+    private void showLicense() {
+        if (currentLicense == null) return;
+
+        nameEditText.setText(currentLicense.getName());
+        
+        // Set the license type in dropdown
+        String licenseType = currentLicense.getType();
+        String[] licenseTypes = getResources().getStringArray(R.array.license_types);
+        boolean isStandardType = false;
+        
+        for (String type : licenseTypes) {
+            if (type.equals(licenseType)) {
+                typeDropdown.setText(licenseType, false);
+                isStandardType = true;
+                break;
+            }
+        }
+        
+        // If it's not a standard type, set it as "Other" and show custom field
+        if (!isStandardType) {
+            typeDropdown.setText("Other", false);
+            customTypeLayout.setVisibility(View.VISIBLE);
+            customTypeEditText.setText(licenseType);
+        } else {
+            customTypeLayout.setVisibility(View.GONE);
+        }
+        
+        expiryEditText.setText(currentLicense.getExpiryDate());
+        descriptionEditText.setText(currentLicense.getDescription());
+        
+        deleteButton.setVisibility(View.VISIBLE);
+    }
+
     private void showDatePicker() {
         Calendar calendar = Calendar.getInstance();
         
-        // If editing and date exists, pre-select it
-        if (isEditMode && currentLicense != null) {
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-                calendar.setTime(sdf.parse(currentLicense.getExpiryDate()));
-            } catch (Exception e) {
-                // Use current date if parsing fails
-            }
+        // If editing and date exists, pre-select it (current date if it can't be parsed)
+        if (isEditMode && currentLicense != null && currentLicense.getExpiryDay() != EpochDay.NONE) {
+            calendar.setTimeInMillis(EpochDay.toMillis(currentLicense.getExpiryDay(), 0));
         }
 
         DatePickerDialog datePickerDialog = new DatePickerDialog(
                 this,
                 (view, year, month, dayOfMonth) -> {
-                    Calendar selectedDate = Calendar.getInstance();
-                    selectedDate.set(year, month, dayOfMonth);
-                    
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-                    expiryEditText.setText(sdf.format(selectedDate.getTime()));
+                    // Always stored as ASCII yyyy-MM-dd, whatever the device locale's digits
+                    expiryEditText.setText(EpochDay.format(EpochDay.of(year, month + 1, dayOfMonth)));
                 },
                 calendar.get(Calendar.YEAR),
                 calendar.get(Calendar.MONTH),
@@ -214,38 +223,60 @@ public class AddEditLicenseActivity extends AppCompatActivity {
             return;
         }
 
-        try {
-            if (isEditMode && currentLicense != null) {
-                // Update existing license
-                currentLicense.setName(name);
-                currentLicense.setType(type);
-                currentLicense.setExpiryDate(expiryDate);
-                currentLicense.setDescription(description);
-                
-                int rowsUpdated = databaseHelper.updateLicense(currentLicense);
-                if (rowsUpdated > 0) {
-                    Toast.makeText(this, "Employee updated successfully", Toast.LENGTH_SHORT).show();
-                    finish();
-                } else {
-                    Toast.makeText(this, "Failed to update employee", Toast.LENGTH_SHORT).show();
+        // Written in the background; the button stays disabled until the write finishes
+        saveButton.setEnabled(false);
+        if (isEditMode && currentLicense != null) {
+            // Update existing license
+            currentLicense.setName(name);
+            currentLicense.setType(type);
+            currentLicense.setExpiryDate(expiryDate);
+            currentLicense.setDescription(description);
+
+            repository.updateLicense(currentLicense, new LicenseRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer rowsUpdated) {
+                    saveButton.setEnabled(true);
+                    if (rowsUpdated > 0) {
+                        Toast.makeText(AddEditLicenseActivity.this, "Employee updated successfully", Toast.LENGTH_SHORT).show();
+                        finish();
+                    } else {
+                        Toast.makeText(AddEditLicenseActivity.this, "Failed to update employee", Toast.LENGTH_SHORT).show();
+                    }
                 }
-            } else {
-                // Create new license
-                License newLicense = new License(name, type, expiryDate, description);
-                long id = databaseHelper.insertLicense(newLicense);
-                
-                if (id != -1) {
-                    Toast.makeText(this, "Employee added successfully", Toast.LENGTH_SHORT).show();
-                    finish();
-                } else {
-                    Toast.makeText(this, "Failed to add employee", Toast.LENGTH_SHORT).show();
+
+                @Override
+                public void onError(Exception e) {
+                    onSaveError(e);
                 }
-            }
-        } catch (Exception e) {
-            Toast.makeText(this, "Error saving employee: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            });
+        } else {
+            // Create new license
+            License newLicense = new License(name, type, expiryDate, description);
+            repository.insertLicense(newLicense, new LicenseRepository.Callback<Long>() {
+                @Override
+                public void onResult(Long id) {
+                    saveButton.setEnabled(true);
+                    if (id != -1) {
+                        Toast.makeText(AddEditLicenseActivity.this, "Employee added successfully", Toast.LENGTH_SHORT).show();
+                        finish();
+                    } else {
+                        Toast.makeText(AddEditLicenseActivity.this, "Failed to add employee", Toast.LENGTH_SHORT).show();
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    onSaveError(e);
+                }
+            });
         }
     }
 
+    private void onSaveError(Exception e) {
+        saveButton.setEnabled(true);
+        Toast.makeText(this, "Error saving employee: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+    }
+
     private void showDeleteConfirmation() {
         new AlertDialog.Builder(this)
                 .setTitle("Delete Employee")
@@ -257,13 +288,20 @@ public class AddEditLicenseActivity extends AppCompatActivity {
 
     private void deleteLicense() {
         if (currentLicense != null) {
-            try {
-                databaseHelper.deleteLicense(currentLicense.getId());
-                Toast.makeText(this, "Employee deleted successfully", Toast.LENGTH_SHORT).show();
-                finish();
-            } catch (Exception e) {
-                Toast.makeText(this, "Failed to delete employee", Toast.LENGTH_SHORT).show();
-            }
+            deleteButton.setEnabled(false);
+            repository.deleteLicense(currentLicense.getId(), new LicenseRepository.Callback<Void>() {
+                @Override
+                public void onResult(Void result) {
+                    Toast.makeText(AddEditLicenseActivity.this, "Employee deleted successfully", Toast.LENGTH_SHORT).show();
+                    finish();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    deleteButton.setEnabled(true);
+                    Toast.makeText(AddEditLicenseActivity.this, "Failed to delete employee", Toast.LENGTH_SHORT).show();
+                }
+            });
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.licensemanager;
+
+import android.util.SparseArray;
+
+import java.util.Arrays;
+
+/**
+ * Per-row outcome of a bulk write, in the order the rows were supplied.
+ */
+public class BatchResult {
+    private long[] ids = new long[16];
+    private final SparseArray<String> errors = new SparseArray<>();
+    private int size;
+
+    void addSuccess(long id) {
+        ensureCapacity();
+        ids[size++] = id;
+    }
+
+    void addFailure(long id, String error) {
+        ensureCapacity();
+        errors.put(size, error != null ? error : "Unknown error");
+        ids[size++] = id;
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+    }
+
+    // Number of rows processed
+    public int size() {
+        return size;
+    }
+
+    // Row ID written (or attempted) for the row at the index; -1 for failed inserts
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public boolean isSuccess(int index) {
+        return errors.get(index) == null;
+    }
+
+    // Error message for a failed row, or null if it was written
+    public String getError(int index) {
+        return errors.get(index);
+    }
+
+    public int getSuccessCount() {
+        return size - errors.size();
+    }
+
+    public int getFailureCount() {
+        return errors.size();
+    }
+}
@@ -0,0 +1,135 @@
+package com.licensemanager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental RFC 4180 reader: one record per readRecord() call, pulled through a
+ * fixed char buffer, so a file of any size is read in constant memory. Quoted fields
+ * may contain commas, doubled quotes and line breaks; LF, CRLF and CR all end a
+ * record, and a leading byte order mark is skipped.
+ */
+final class CsvReader {
+    private static final int BUFFER_CHARS = 16 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private int position;
+    private int limit;
+    private boolean started;
+
+    // Reused between records; only the fields list handed out is new
+    private final StringBuilder field = new StringBuilder();
+    // 1-based line the last record started on, and the line the reader is on now
+    private int recordLine;
+    private int line = 1;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    // Line the record last returned by readRecord() started on (1-based)
+    int getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * The next record's fields, or null at the end of the input. Blank lines are
+     * skipped. Throws IOException for a quoted field left open at the end of the input.
+     */
+    List<String> readRecord() throws IOException {
+        int c = read();
+        // Skip blank lines between records
+        while (c == '\n' || c == '\r') {
+            endLine(c);
+            c = read();
+        }
+        if (c < 0) return null;
+
+        recordLine = line;
+        List<String> fields = new ArrayList<>(8);
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+            if (c == '\n' || c == '\r') endLine(c);
+            return fields;
+        }
+    }
+
+    // Reads a quoted field after its opening quote and returns the character after it.
+    // Anything between the closing quote and the next separator is kept as is.
+    private int readQuoted() throws IOException {
+        int startLine = line;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IOException("Unterminated quoted field starting on line " + startLine);
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                        field.append((char) c);
+                        c = read();
+                    }
+                    return c;
+                }
+            } else if (c == '\r' || c == '\n') {
+                line++;
+                if (c == '\r' && peek() == '\n') {
+                    field.append('\r');
+                    c = read();
+                }
+            }
+            field.append((char) c);
+        }
+    }
+
+    // Finishes a line break that started with c, taking the LF of a CRLF
+    private void endLine(int c) throws IOException {
+        line++;
+        if (c == '\r' && peek() == '\n') position++;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = in.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) return false;
+
+        position = 0;
+        limit = count;
+        if (!started) {
+            started = true;
+            if (buffer[0] == '\uFEFF') position = 1;
+            if (position == limit) return fill();
+        }
+        return true;
+    }
+}
@@ -1,17 +1,29 @@
 package com.licensemanager;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
 
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "license_manager.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 6;
 
     // Table name
     public static final String TABLE_LICENSES = "licenses";
@@ -22,8 +34,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_TYPE = "type";
     public static final String COLUMN_EXPIRY_DATE = "expiry_date";
     public static final String COLUMN_DESCRIPTION = "description";
+    // Expiry as days since 1970-01-01, derived from expiry_date (added in version 2)
+    public static final String COLUMN_EXPIRY_DAY = "expiry_day";
 
-    // Create table SQL
+    // Full-text index over name, type and description (added in version 3)
+    public static final String TABLE_LICENSES_FTS = "licenses_fts";
+
+    // Alarms currently registered with AlarmManager (added in version 4)
+    public static final String TABLE_ALARM_LEDGER = "alarm_ledger";
+    public static final String COLUMN_REQUEST_CODE = "request_code";
+    public static final String COLUMN_DUE_DAY = "due_day";
+    public static final String COLUMN_TRIGGER_AT = "trigger_at";
+
+    // Version 1 table; later columns and indexes are added by DatabaseMigrations
     private static final String CREATE_TABLE_LICENSES = 
         "CREATE TABLE " + TABLE_LICENSES + "(" +
         COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
@@ -33,157 +56,885 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         COLUMN_DESCRIPTION + " TEXT" +
         ")";
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Hot-path SQL, compiled once per process
+    private static final String SQL_INSERT =
+        "INSERT INTO " + TABLE_LICENSES + "(" + COLUMN_NAME + ", " + COLUMN_TYPE + ", " +
+        COLUMN_EXPIRY_DATE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_EXPIRY_DAY + ") VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_UPDATE =
+        "UPDATE " + TABLE_LICENSES + " SET " + COLUMN_NAME + " = ?, " + COLUMN_TYPE + " = ?, " +
+        COLUMN_EXPIRY_DATE + " = ?, " + COLUMN_DESCRIPTION + " = ?, " + COLUMN_EXPIRY_DAY + " = ?" +
+        " WHERE " + COLUMN_ID + " = ?";
+    // Restores keep each row's original id
+    private static final String SQL_INSERT_WITH_ID =
+        "INSERT INTO " + TABLE_LICENSES + "(" + COLUMN_NAME + ", " + COLUMN_TYPE + ", " +
+        COLUMN_EXPIRY_DATE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_EXPIRY_DAY + ", " + COLUMN_ID +
+        ") VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_DELETE =
+        "DELETE FROM " + TABLE_LICENSES + " WHERE " + COLUMN_ID + " = ?";
+    private static final String SQL_DELETE_ALL =
+        "DELETE FROM " + TABLE_LICENSES;
+    private static final String SQL_COUNT =
+        "SELECT COUNT(*) FROM " + TABLE_LICENSES;
+    // Column order expected by readLicense
+    private static final String LICENSE_COLUMNS =
+        COLUMN_ID + ", " + COLUMN_NAME + ", " + COLUMN_TYPE + ", " +
+        COLUMN_EXPIRY_DATE + ", " + COLUMN_DESCRIPTION;
+    // List order, served by idx_licenses_expiry_day
+    private static final String ORDER_BY_EXPIRY =
+        " ORDER BY " + COLUMN_EXPIRY_DAY + " ASC, " + COLUMN_ID + " ASC";
+    // Other list orders, served by idx_licenses_name and idx_licenses_type_expiry
+    private static final String ORDER_BY_NAME =
+        " ORDER BY " + COLUMN_NAME + " COLLATE NOCASE ASC, " + COLUMN_ID + " ASC";
+    private static final String ORDER_BY_TYPE =
+        " ORDER BY " + COLUMN_TYPE + " ASC, " + COLUMN_EXPIRY_DAY + " ASC, " + COLUMN_ID + " ASC";
+    // Read from idx_licenses_type_expiry alone
+    private static final String SQL_DISTINCT_TYPES =
+        "SELECT DISTINCT " + COLUMN_TYPE + " FROM " + TABLE_LICENSES + " ORDER BY " + COLUMN_TYPE;
+    // Status totals as three index-only counts over idx_licenses_expiry_day; the same
+    // boundaries as License.getStatus (NULL days fall outside both ranges)
+    private static final String SQL_STATUS_COUNTS =
+        "SELECT (SELECT COUNT(*) FROM " + TABLE_LICENSES + ")," +
+        " (SELECT COUNT(*) FROM " + TABLE_LICENSES + " WHERE " + COLUMN_EXPIRY_DAY + " BETWEEN ?1 AND ?2)," +
+        " (SELECT COUNT(*) FROM " + TABLE_LICENSES + " WHERE " + COLUMN_EXPIRY_DAY + " < ?1)";
+    // Row IDs of licenses matching an FTS query
+    private static final String SQL_FTS_MATCH =
+        "SELECT docid FROM " + TABLE_LICENSES_FTS + " WHERE " + TABLE_LICENSES_FTS + " MATCH ?";
+    // Multi-column reads can't use SQLiteStatement; a constant SQL string lets every
+    // pooled connection reuse its own prepared statement instead
+    private static final String SQL_GET_LICENSE =
+        "SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES + " WHERE " + COLUMN_ID + " = ?";
+
+    // Every name for NameTrigramIndex, in id order so IDs append to the index
+    private static final String SQL_NAMES =
+        "SELECT " + COLUMN_ID + ", " + COLUMN_NAME + " FROM " + TABLE_LICENSES + " ORDER BY " + COLUMN_ID;
+
+    // Duplicate check for imports: a seek on idx_licenses_name; the unary + keeps the
+    // planner from picking idx_licenses_type_expiry, which only narrows to one type
+    private static final String SQL_LICENSE_EXISTS =
+        "SELECT EXISTS(SELECT 1 FROM " + TABLE_LICENSES + " WHERE " + COLUMN_NAME + " = ? COLLATE NOCASE" +
+        " AND +" + COLUMN_TYPE + " = ?)";
+
+    private static final String SQL_GET_SCHEDULED_ALARM =
+        "SELECT " + COLUMN_DUE_DAY + ", " + COLUMN_TRIGGER_AT + " FROM " + TABLE_ALARM_LEDGER +
+        " WHERE " + COLUMN_REQUEST_CODE + " = ?";
+    private static final String SQL_PUT_SCHEDULED_ALARM =
+        "INSERT OR REPLACE INTO " + TABLE_ALARM_LEDGER + "(" + COLUMN_REQUEST_CODE + ", " +
+        COLUMN_DUE_DAY + ", " + COLUMN_TRIGGER_AT + ") VALUES (?, ?, ?)";
+    private static final String SQL_DELETE_SCHEDULED_ALARM =
+        "DELETE FROM " + TABLE_ALARM_LEDGER + " WHERE " + COLUMN_REQUEST_CODE + " = ?";
+
+    // Rows written per transaction by the bulk APIs
+    private static final int BATCH_CHUNK_SIZE = 500;
+    // Ranked IDs read per query by searchLicensesFuzzy, within SQLite's 999 argument limit
+    private static final int FUZZY_CHUNK_SIZE = 200;
+
+    private static DatabaseHelper instance;
+
+    // Compiled statements keyed by SQL text
+    private final Map<String, SQLiteStatement> statementCache = new HashMap<>();
+
+    // Trigram index for fuzzy name search, built by the first such search and then kept
+    // current by every write below; guarded by its own lock so writes never wait on
+    // the statement cache
+    private final Object nameIndexLock = new Object();
+    private NameTrigramIndex nameIndex;
+
+    // One helper per process so the connection pool and its statement caches stay warm
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+            // Query timings are collected by default in debuggable builds only
+            if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+                QueryStats.setEnabled(true);
+            }
+        }
+        return instance;
+    }
+
+    // Separate database files (e.g. benchmarks) get their own helper
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        // WAL lets the background page loader read while the UI thread writes
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE_LICENSES);
+        DatabaseMigrations.migrate(db, 1, DATABASE_VERSION);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_LICENSES);
-        onCreate(db);
+        // Never drop data: walk the schema forward one version at a time
+        DatabaseMigrations.migrate(db, oldVersion, newVersion);
+    }
+
+    @Override
+    public synchronized void close() {
+        for (SQLiteStatement statement : statementCache.values()) {
+            statement.close();
+        }
+        statementCache.clear();
+        super.close();
+    }
+
+    // Compiled statements are shared, so each use holds the statement's lock while
+    // binding and executing. The connection itself stays open for the process lifetime.
+    private synchronized SQLiteStatement statement(String sql) {
+        SQLiteStatement statement = statementCache.get(sql);
+        if (statement == null) {
+            statement = this.getWritableDatabase().compileStatement(sql);
+            statementCache.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private static void bindLicense(SQLiteStatement statement, License license) {
+        statement.bindString(1, license.getName());
+        statement.bindString(2, license.getType());
+        statement.bindString(3, license.getExpiryDate());
+        if (license.getDescription() != null) {
+            statement.bindString(4, license.getDescription());
+        } else {
+            statement.bindNull(4);
+        }
+        int expiryDay = license.getExpiryDay();
+        if (expiryDay != EpochDay.NONE) {
+            statement.bindLong(5, expiryDay);
+        } else {
+            statement.bindNull(5);
+        }
     }
 
     // CRUD Operations
 
     // Create - Insert a new license
     public long insertLicense(License license) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        
-        values.put(COLUMN_NAME, license.getName());
-        values.put(COLUMN_TYPE, license.getType());
-        values.put(COLUMN_EXPIRY_DATE, license.getExpiryDate());
-        values.put(COLUMN_DESCRIPTION, license.getDescription());
-        
-        long id = db.insert(TABLE_LICENSES, null, values);
-        db.close();
+        long start = QueryStats.start();
+        SQLiteStatement statement = statement(SQL_INSERT);
+        long id;
+        synchronized (statement) {
+            bindLicense(statement, license);
+            id = statement.executeInsert();
+            statement.clearBindings();
+        }
+        if (id != -1) indexName(id, license.getName());
+        QueryStats.end("insertLicense", start, id != -1 ? 1 : 0);
         return id;
     }
 
     // Read - Get a single license by ID
     public License getLicense(long id) {
+        long start = QueryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
-        
-        Cursor cursor = db.query(TABLE_LICENSES,
-                new String[]{COLUMN_ID, COLUMN_NAME, COLUMN_TYPE, COLUMN_EXPIRY_DATE, COLUMN_DESCRIPTION},
-                COLUMN_ID + "=?",
-                new String[]{String.valueOf(id)},
-                null, null, null);
+        Cursor cursor = db.rawQuery(SQL_GET_LICENSE, new String[]{String.valueOf(id)});
         
         License license = null;
-        if (cursor != null && cursor.moveToFirst()) {
-            license = new License(
-                    cursor.getLong(0),
-                    cursor.getString(1),
-                    cursor.getString(2),
-                    cursor.getString(3),
-                    cursor.getString(4)
-            );
-            cursor.close();
+        if (cursor.moveToFirst()) {
+            license = readLicense(cursor);
         }
-        
-        db.close();
+        cursor.close();
+        QueryStats.end("getLicense", start, license != null ? 1 : 0);
         return license;
     }
 
     // Read - Get all licenses
     public List<License> getAllLicenses() {
+        long start = QueryStats.start();
         List<License> licenseList = new ArrayList<>();
-        String selectQuery = "SELECT * FROM " + TABLE_LICENSES + " ORDER BY " + COLUMN_EXPIRY_DATE + " ASC";
+        String selectQuery = "SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES + ORDER_BY_EXPIRY;
         
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(selectQuery, null);
         
-        if (cursor.moveToFirst()) {
-            do {
-                License license = new License(
-                        cursor.getLong(0),
-                        cursor.getString(1),
-                        cursor.getString(2),
-                        cursor.getString(3),
-                        cursor.getString(4)
-                );
-                licenseList.add(license);
-            } while (cursor.moveToNext());
+        while (cursor.moveToNext()) {
+            licenseList.add(readLicense(cursor));
         }
         
         cursor.close();
-        db.close();
+        QueryStats.end("getAllLicenses", start, licenseList.size());
         return licenseList;
     }
 
+    // Read - Stream every license, in id order, through the exporter without building a
+    // list; the cursor walks the table once and only one window of rows is in memory
+    public int exportLicenses(LicenseExporter exporter, CancellationSignal cancellationSignal,
+                              LicenseExporter.ProgressListener progress) throws IOException {
+        int total = getLicenseCount();
+        long start = QueryStats.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES +
+                " ORDER BY " + COLUMN_ID, null, cancellationSignal);
+        int written;
+        try {
+            written = exporter.export(cursor, total, cancellationSignal, progress);
+        } finally {
+            cursor.close();
+        }
+        QueryStats.end("exportLicenses", start, written);
+        return written;
+    }
+
+    // Read - Write every license, in id order, to a binary backup (see LicenseBackup)
+    public int backupLicenses(WritableByteChannel out) throws IOException {
+        long start = QueryStats.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES +
+                " ORDER BY " + COLUMN_ID, null);
+        int written;
+        try {
+            written = LicenseBackup.write(cursor, out);
+        } finally {
+            cursor.close();
+        }
+        QueryStats.end("backupLicenses", start, written);
+        return written;
+    }
+
+    // Replace every license with the contents of a backup, keeping their ids. Runs in
+    // one transaction that commits only after the backup's checksum has been verified,
+    // so a corrupt or truncated file leaves the table exactly as it was.
+    public int restoreLicenses(LicenseBackup.Reader backup) throws IOException {
+        long start = QueryStats.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = statement(SQL_INSERT_WITH_ID);
+        int restored = 0;
+        synchronized (statement) {
+            db.beginTransaction();
+            try {
+                db.execSQL(SQL_DELETE_ALL);
+                License license;
+                while ((license = backup.next()) != null) {
+                    bindLicense(statement, license);
+                    statement.bindLong(6, license.getId());
+                    statement.executeInsert();
+                    restored++;
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                // A corrupt backup throws mid-row; the cached statement must not keep its values
+                statement.clearBindings();
+                db.endTransaction();
+            }
+        }
+        // Every row changed, so rebuilding on the next fuzzy search is cheaper than
+        // updating the index row by row
+        synchronized (nameIndexLock) {
+            nameIndex = null;
+        }
+        QueryStats.end("restoreLicenses", start, restored);
+        return restored;
+    }
+
     // Update - Update an existing license
     public int updateLicense(License license) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_NAME, license.getName());
-        values.put(COLUMN_TYPE, license.getType());
-        values.put(COLUMN_EXPIRY_DATE, license.getExpiryDate());
-        values.put(COLUMN_DESCRIPTION, license.getDescription());
-        
-        int rowsUpdated = db.update(TABLE_LICENSES, values,
-                COLUMN_ID + "=?",
-                new String[]{String.valueOf(license.getId())});
-        
-        db.close();
+        long start = QueryStats.start();
+        SQLiteStatement statement = statement(SQL_UPDATE);
+        int rowsUpdated;
+        synchronized (statement) {
+            bindLicense(statement, license);
+            statement.bindLong(6, license.getId());
+            rowsUpdated = statement.executeUpdateDelete();
+            statement.clearBindings();
+        }
+        if (rowsUpdated > 0) indexName(license.getId(), license.getName());
+        QueryStats.end("updateLicense", start, rowsUpdated);
         return rowsUpdated;
     }
 
     // Delete - Delete a license
     public void deleteLicense(long id) {
+        long start = QueryStats.start();
+        SQLiteStatement statement = statement(SQL_DELETE);
+        int rowsDeleted;
+        synchronized (statement) {
+            statement.bindLong(1, id);
+            rowsDeleted = statement.executeUpdateDelete();
+            statement.clearBindings();
+        }
+        if (rowsDeleted > 0) {
+            synchronized (nameIndexLock) {
+                if (nameIndex != null) nameIndex.remove(id);
+            }
+        }
+        QueryStats.end("deleteLicense", start, rowsDeleted);
+    }
+
+    // Bulk create - Insert many licenses, committing every BATCH_CHUNK_SIZE rows.
+    // Inserted licenses get their new IDs set.
+    public BatchResult insertLicenses(Iterable<License> licenses) {
+        return writeLicenses(licenses, false);
+    }
+
+    // Bulk update - Update many licenses by ID, committing every BATCH_CHUNK_SIZE rows.
+    // Rows whose ID no longer exists are reported as failures.
+    public BatchResult updateLicenses(Iterable<License> licenses) {
+        return writeLicenses(licenses, true);
+    }
+
+    private BatchResult writeLicenses(Iterable<License> licenses, boolean update) {
+        long start = QueryStats.start();
+        BatchResult result = new BatchResult();
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_LICENSES,
-                COLUMN_ID + "=?",
-                new String[]{String.valueOf(id)});
-        db.close();
+        SQLiteStatement statement = statement(update ? SQL_UPDATE : SQL_INSERT);
+        Iterator<License> iterator = licenses.iterator();
+        List<License> written = new ArrayList<>(BATCH_CHUNK_SIZE);
+
+        synchronized (statement) {
+            while (iterator.hasNext()) {
+                // Readers keep going under WAL; other writers get a turn between chunks
+                written.clear();
+                db.beginTransactionNonExclusive();
+                try {
+                    for (int i = 0; i < BATCH_CHUNK_SIZE && iterator.hasNext(); i++) {
+                        License license = iterator.next();
+                        if (writeRow(statement, license, update, result)) written.add(license);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                // Only once the chunk is committed
+                for (License license : written) {
+                    indexName(license.getId(), license.getName());
+                }
+            }
+        }
+        QueryStats.end(update ? "updateLicenses" : "insertLicenses", start, result.getSuccessCount());
+        return result;
+    }
+
+    // Returns true if the row was written
+    private static boolean writeRow(SQLiteStatement statement, License license, boolean update,
+                                    BatchResult result) {
+        try {
+            bindLicense(statement, license);
+            if (update) {
+                statement.bindLong(6, license.getId());
+                if (statement.executeUpdateDelete() > 0) {
+                    result.addSuccess(license.getId());
+                    return true;
+                }
+                result.addFailure(license.getId(), "No license with id " + license.getId());
+            } else {
+                long id = statement.executeInsert();
+                if (id != -1) {
+                    license.setId(id);
+                    result.addSuccess(id);
+                    return true;
+                }
+                result.addFailure(-1, "Insert failed");
+            }
+            return false;
+        } catch (SQLException | IllegalArgumentException e) {
+            // A failed statement only rolls back its own row; the chunk carries on
+            result.addFailure(update ? license.getId() : -1, e.getMessage());
+            return false;
+        } finally {
+            statement.clearBindings();
+        }
     }
 
-    // Search licenses by name or type
+    // Search licenses by name, type or notes through the full-text index.
+    // Every word is matched as a prefix; results are ranked name-start matches first,
+    // then other name matches, then type matches, then notes-only matches.
     public List<License> searchLicenses(String query) {
+        long start = QueryStats.start();
         List<License> licenseList = new ArrayList<>();
+        String[] terms = LicenseSearch.terms(query);
+        String matchQuery = LicenseSearch.toFtsQuery(terms);
+        if (matchQuery == null) {
+            // getAllLicenses records its own call; this one still counts as a search
+            List<License> all = getAllLicenses();
+            QueryStats.end("searchLicenses", start, all.size());
+            return all;
+        }
         
+        String firstWord = terms[0];
         SQLiteDatabase db = this.getReadableDatabase();
-        String selectQuery = "SELECT * FROM " + TABLE_LICENSES + 
-                " WHERE " + COLUMN_NAME + " LIKE ? OR " + COLUMN_TYPE + " LIKE ?" +
-                " ORDER BY " + COLUMN_EXPIRY_DATE + " ASC";
+        String selectQuery = "SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES + 
+                " WHERE " + COLUMN_ID + " IN (" + SQL_FTS_MATCH + ")" +
+                " ORDER BY CASE" +
+                " WHEN " + COLUMN_NAME + " LIKE ? THEN 0" +
+                " WHEN " + COLUMN_NAME + " LIKE ? THEN 1" +
+                " WHEN " + COLUMN_TYPE + " LIKE ? THEN 2" +
+                " ELSE 3 END, " + COLUMN_EXPIRY_DAY + " ASC, " + COLUMN_ID + " ASC";
         
-        String searchQuery = "%" + query + "%";
-        Cursor cursor = db.rawQuery(selectQuery, new String[]{searchQuery, searchQuery});
+        Cursor cursor = db.rawQuery(selectQuery, new String[]{
+                matchQuery, firstWord + "%", "% " + firstWord + "%", firstWord + "%"});
         
-        if (cursor.moveToFirst()) {
-            do {
-                License license = new License(
-                        cursor.getLong(0),
-                        cursor.getString(1),
-                        cursor.getString(2),
-                        cursor.getString(3),
-                        cursor.getString(4)
-                );
-                licenseList.add(license);
-            } while (cursor.moveToNext());
+        while (cursor.moveToNext()) {
+            licenseList.add(readLicense(cursor));
         }
         
         cursor.close();
-        db.close();
+        QueryStats.end("searchLicenses", start, licenseList.size());
         return licenseList;
     }
 
-    // Get count of licenses by status
-    public int getLicenseCount() {
+    // Search licenses by employee name, tolerating typos ("Jonh Smiht"), through the
+    // in-memory trigram index. Returns at most limit rows matching the rest of the
+    // filter, closest names first; the filter's sort order doesn't apply.
+    public List<License> searchLicensesFuzzy(LicenseFilter filter, int limit) {
+        long start = QueryStats.start();
+        LicenseFilter rest = filter.withText("");
+        long[] ids;
+        synchronized (nameIndexLock) {
+            if (nameIndex == null) nameIndex = loadNameIndex();
+            // Names beyond the first limit are only needed if the other filters drop rows
+            ids = nameIndex.search(filter.getText(), rest.isUnfiltered() ? limit : limit * 4);
+        }
+
+        // Read the ranked rows a chunk at a time with the other filters applied, until
+        // enough of them pass
+        List<License> licenseList = new ArrayList<>(Math.min(limit, ids.length));
+        SQLiteDatabase db = this.getReadableDatabase();
+        Map<Long, License> chunkRows = new HashMap<>();
+        for (int from = 0; from < ids.length && licenseList.size() < limit; from += FUZZY_CHUNK_SIZE) {
+            int to = Math.min(ids.length, from + FUZZY_CHUNK_SIZE);
+            List<String> args = new ArrayList<>();
+            StringBuilder where = new StringBuilder(COLUMN_ID + " IN (");
+            for (int i = from; i < to; i++) {
+                where.append(i == from ? "?" : ", ?");
+                args.add(String.valueOf(ids[i]));
+            }
+            where.append(")");
+            appendFilter(where, args, rest, EpochDay.today());
+
+            chunkRows.clear();
+            Cursor cursor = db.rawQuery("SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES +
+                    " WHERE " + where, args.toArray(new String[0]));
+            while (cursor.moveToNext()) {
+                License license = readLicense(cursor);
+                chunkRows.put(license.getId(), license);
+            }
+            cursor.close();
+
+            for (int i = from; i < to && licenseList.size() < limit; i++) {
+                License license = chunkRows.get(ids[i]);
+                if (license != null) licenseList.add(license);
+            }
+        }
+        QueryStats.end("searchLicensesFuzzy", start, licenseList.size());
+        return licenseList;
+    }
+
+    private NameTrigramIndex loadNameIndex() {
+        long start = QueryStats.start();
+        NameTrigramIndex index = new NameTrigramIndex();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SQL_NAMES, null);
+        while (cursor.moveToNext()) {
+            index.put(cursor.getLong(0), cursor.getString(1));
+        }
+        cursor.close();
+        QueryStats.end("loadNameIndex", start, index.size());
+        return index;
+    }
+
+    // Keep a built name index in step with a written row
+    private void indexName(long id, String name) {
+        synchronized (nameIndexLock) {
+            if (nameIndex != null) nameIndex.put(id, name);
+        }
+    }
+
+    // Read - Get one page of licenses expiring within [fromDay, toDay] (epoch days, inclusive),
+    // answered from the expiry_day index without scanning or sorting the table
+    public List<License> getLicensesExpiringBetween(int fromDay, int toDay, License after, int limit) {
+        return queryPage("getLicensesExpiringBetween",
+                LicenseFilter.ALL.withExpiryRange(fromDay, toDay), after, limit);
+    }
+
+    // Read - Get one page of the licenses matching the filter, in its sort order, starting
+    // after the given row. Status, type, expiry window and text all go into one query, and
+    // a keyset cursor instead of OFFSET keeps every page a bounded index range scan.
+    public List<License> getLicensesPage(LicenseFilter filter, License after, int limit) {
+        return queryPage("getLicensesPage", filter, after, limit);
+    }
+
+    private List<License> queryPage(String name, LicenseFilter filter, License after, int limit) {
+        long start = QueryStats.start();
+        List<License> licenseList = new ArrayList<>(limit);
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        appendFilter(where, args, filter, EpochDay.today());
+        if (after != null) {
+            appendAfter(where, args, filter.getSort(), after);
+        }
+
+        String selectQuery = "SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES +
+                (where.length() > 0 ? " WHERE " + where : "") +
+                orderBy(filter.getSort()) + " LIMIT " + limit;
+
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_LICENSES, null);
+        Cursor cursor = db.rawQuery(selectQuery, args.toArray(new String[0]));
+
+        while (cursor.moveToNext()) {
+            licenseList.add(readLicense(cursor));
+        }
+
+        cursor.close();
+        QueryStats.end(name, start, licenseList.size());
+        return licenseList;
+    }
+
+    // Append the filter's conditions (ANDed) and their arguments. Status is turned into
+    // expiry_day ranges relative to today, with the same boundaries as License.statusOf;
+    // adjacent statuses become a single range so the expiry index can still be used.
+    private static void appendFilter(StringBuilder where, List<String> args, LicenseFilter filter, int today) {
+        String matchQuery = LicenseSearch.toFtsQuery(filter.getTerms());
+        if (matchQuery != null) {
+            and(where).append(COLUMN_ID + " IN (" + SQL_FTS_MATCH + ")");
+            args.add(matchQuery);
+        }
+
+        String soonDay = String.valueOf(today + License.EXPIRING_SOON_DAYS);
+        String todayDay = String.valueOf(today);
+        switch (filter.getStatuses()) {
+            case LicenseFilter.STATUS_EXPIRED:
+                and(where).append(COLUMN_EXPIRY_DAY + " < ?");
+                args.add(todayDay);
+                break;
+            case LicenseFilter.STATUS_EXPIRING_SOON:
+                and(where).append(COLUMN_EXPIRY_DAY + " BETWEEN ? AND ?");
+                args.add(todayDay);
+                args.add(soonDay);
+                break;
+            case LicenseFilter.STATUS_ACTIVE:
+                and(where).append("(" + COLUMN_EXPIRY_DAY + " > ? OR " + COLUMN_EXPIRY_DAY + " IS NULL)");
+                args.add(soonDay);
+                break;
+            case LicenseFilter.STATUS_EXPIRED | LicenseFilter.STATUS_EXPIRING_SOON:
+                and(where).append(COLUMN_EXPIRY_DAY + " <= ?");
+                args.add(soonDay);
+                break;
+            case LicenseFilter.STATUS_EXPIRING_SOON | LicenseFilter.STATUS_ACTIVE:
+                and(where).append("(" + COLUMN_EXPIRY_DAY + " >= ? OR " + COLUMN_EXPIRY_DAY + " IS NULL)");
+                args.add(todayDay);
+                break;
+            case LicenseFilter.STATUS_EXPIRED | LicenseFilter.STATUS_ACTIVE:
+                and(where).append("(" + COLUMN_EXPIRY_DAY + " < ? OR " + COLUMN_EXPIRY_DAY + " > ? OR " +
+                        COLUMN_EXPIRY_DAY + " IS NULL)");
+                args.add(todayDay);
+                args.add(soonDay);
+                break;
+            default:
+                // Every status
+                break;
+        }
+
+        if (!filter.getTypes().isEmpty()) {
+            and(where).append(COLUMN_TYPE + " IN (");
+            boolean first = true;
+            for (String type : filter.getTypes()) {
+                where.append(first ? "?" : ", ?");
+                args.add(type);
+                first = false;
+            }
+            where.append(")");
+        }
+
+        if (filter.getFromDay() != EpochDay.NONE) {
+            and(where).append(COLUMN_EXPIRY_DAY + " >= ?");
+            args.add(String.valueOf(filter.getFromDay()));
+        }
+        if (filter.getToDay() != EpochDay.NONE) {
+            and(where).append(COLUMN_EXPIRY_DAY + " <= ?");
+            args.add(String.valueOf(filter.getToDay()));
+        }
+    }
+
+    // Keyset condition for the rows that sort after the given one. The leading ">=" on
+    // the first sort column is redundant but lets SQLite seek into the index; without
+    // it the OR makes every page scan the index from the start.
+    private static void appendAfter(StringBuilder where, List<String> args, LicenseFilter.Sort sort, License after) {
+        and(where);
+        String afterDay = after.getExpiryDay() != EpochDay.NONE ? String.valueOf(after.getExpiryDay()) : null;
+        String afterId = String.valueOf(after.getId());
+        switch (sort) {
+            case NAME:
+                appendKeyAfter(where, args, COLUMN_NAME + " COLLATE NOCASE", after.getName(),
+                        COLUMN_ID + " > ?", afterId);
+                break;
+            case TYPE:
+                // Within one type the rows are in expiry order
+                StringBuilder sameType = new StringBuilder();
+                List<String> sameTypeArgs = new ArrayList<>();
+                appendKeyAfter(sameType, sameTypeArgs, COLUMN_EXPIRY_DAY, afterDay, COLUMN_ID + " > ?", afterId);
+                appendKeyAfter(where, args, COLUMN_TYPE, after.getType(),
+                        sameType.toString(), sameTypeArgs.toArray(new String[0]));
+                break;
+            default:
+                appendKeyAfter(where, args, COLUMN_EXPIRY_DAY, afterDay, COLUMN_ID + " > ?", afterId);
+                break;
+        }
+    }
+
+    // Rows whose column sorts after value, or equals it and satisfy the tie-break
+    // condition. NULLs sort first, so after a NULL every non-NULL value comes next.
+    private static void appendKeyAfter(StringBuilder where, List<String> args, String column, String value,
+                                       String tieBreak, String... tieBreakArgs) {
+        if (value == null) {
+            where.append("((" + column + " IS NULL AND " + tieBreak + ") OR " + column + " IS NOT NULL)");
+        } else {
+            where.append(column + " >= ? AND (" + column + " > ? OR (" + column + " = ? AND " + tieBreak + "))");
+            args.add(value);
+            args.add(value);
+            args.add(value);
+        }
+        Collections.addAll(args, tieBreakArgs);
+    }
+
+    private static StringBuilder and(StringBuilder where) {
+        return where.length() > 0 ? where.append(" AND ") : where;
+    }
+
+    // Each order ends in id so the keyset is unique, and matches one index exactly
+    private static String orderBy(LicenseFilter.Sort sort) {
+        switch (sort) {
+            case NAME:
+                return ORDER_BY_NAME;
+            case TYPE:
+                return ORDER_BY_TYPE;
+            default:
+                return ORDER_BY_EXPIRY;
+        }
+    }
+
+    // Read - Distinct license types in use, for the type filter
+    public List<String> getLicenseTypes() {
+        long start = QueryStats.start();
+        List<String> types = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SQL_DISTINCT_TYPES, null);
+        while (cursor.moveToNext()) {
+            types.add(LicenseTypes.intern(cursor.getString(0)));
+        }
+        cursor.close();
+        QueryStats.end("getLicenseTypes", start, types.size());
+        return types;
+    }
+
+    // Read - Licenses matching the filter grouped into week or month buckets of expiry,
+    // with counts per type, in date order. One GROUP BY on (type, expiry_day) walks
+    // idx_licenses_type_expiry in order with no sort; the few thousand (type, day)
+    // counts it returns are folded into buckets here, each bucket receiving its types
+    // in ascending order. Rows without an expiry day aren't in any bucket.
+    public List<ExpiryTimeline.Bucket> getExpiryTimeline(LicenseFilter filter, ExpiryTimeline.Granularity granularity) {
+        long start = QueryStats.start();
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder(COLUMN_EXPIRY_DAY + " IS NOT NULL");
+        appendFilter(where, args, filter, EpochDay.today());
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_TYPE + ", " + COLUMN_EXPIRY_DAY + ", COUNT(*) FROM " +
+                TABLE_LICENSES + " WHERE " + where + " GROUP BY " + COLUMN_TYPE + ", " + COLUMN_EXPIRY_DAY +
+                " ORDER BY " + COLUMN_TYPE + ", " + COLUMN_EXPIRY_DAY, args.toArray(new String[0]));
+
+        Map<Integer, ExpiryTimeline.Bucket> buckets = new TreeMap<>();
+        // Days of one type arrive in order, so consecutive rows mostly share a bucket
+        ExpiryTimeline.Bucket bucket = null;
+        while (cursor.moveToNext()) {
+            int day = cursor.getInt(1);
+            if (bucket == null || day < bucket.startDay || day > bucket.endDay) {
+                int bucketStart = granularity.bucketStart(day);
+                bucket = buckets.get(bucketStart);
+                if (bucket == null) {
+                    bucket = new ExpiryTimeline.Bucket(bucketStart, granularity.bucketEnd(bucketStart));
+                    buckets.put(bucketStart, bucket);
+                }
+            }
+            bucket.addCount(LicenseTypes.intern(cursor.getString(0)), cursor.getInt(2));
+        }
+        cursor.close();
+        QueryStats.end("getExpiryTimeline", start, buckets.size());
+        return new ArrayList<>(buckets.values());
+    }
+
+    // First day on or after fromDay that is 'daysBefore' days ahead of some license's
+    // expiry, for any of the given offsets; EpochDay.NONE if there is none. Each offset
+    // is one MIN() seek on idx_licenses_expiry_day.
+    public int getNextThresholdDay(int fromDay, int[] daysBefore) {
+        long start = QueryStats.start();
+        StringBuilder sql = new StringBuilder("SELECT MIN(day) FROM (");
+        String[] args = new String[daysBefore.length];
+        for (int i = 0; i < daysBefore.length; i++) {
+            if (i > 0) sql.append(" UNION ALL ");
+            sql.append("SELECT MIN(" + COLUMN_EXPIRY_DAY + ") - ").append(daysBefore[i])
+                    .append(" AS day FROM " + TABLE_LICENSES + " WHERE " + COLUMN_EXPIRY_DAY + " >= ?");
+            args[i] = String.valueOf(fromDay + daysBefore[i]);
+        }
+        sql.append(")");
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql.toString(), args);
+        int day = EpochDay.NONE;
+        if (cursor.moveToFirst() && !cursor.isNull(0)) {
+            day = cursor.getInt(0);
+        }
+        cursor.close();
+        QueryStats.end("getNextThresholdDay", start, 1);
+        return day;
+    }
+
+    // Licenses with a threshold on any day in [fromDay, toDay]: those expiring 'daysBefore'
+    // days after such a day for one of the offsets. The candidate expiry days go in one
+    // IN list, which SQLite answers with a seek per value on the expiry index (OR-ed
+    // ranges would be planned as a full index scan to keep the sort order).
+    public List<License> getLicensesDueBetween(int fromDay, int toDay, int[] daysBefore) {
+        long start = QueryStats.start();
+        List<License> licenseList = new ArrayList<>();
+        Set<Integer> expiryDays = new TreeSet<>();
+        for (int day = fromDay; day <= toDay; day++) {
+            for (int days : daysBefore) {
+                expiryDays.add(day + days);
+            }
+        }
+
+        StringBuilder in = new StringBuilder();
+        String[] args = new String[expiryDays.size()];
+        int i = 0;
+        for (int expiryDay : expiryDays) {
+            in.append(i == 0 ? "?" : ", ?");
+            args[i++] = String.valueOf(expiryDay);
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + LICENSE_COLUMNS + " FROM " + TABLE_LICENSES +
+                " WHERE " + COLUMN_EXPIRY_DAY + " IN (" + in + ")" + ORDER_BY_EXPIRY, args);
+
+        while (cursor.moveToNext()) {
+            licenseList.add(readLicense(cursor));
+        }
+
+        cursor.close();
+        QueryStats.end("getLicensesDueBetween", start, licenseList.size());
+        return licenseList;
+    }
+
+    // Alarm ledger - the alarm registered under the request code, or null if none is
+    public ScheduledAlarm getScheduledAlarm(int requestCode) {
+        long start = QueryStats.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SQL_GET_SCHEDULED_ALARM, new String[]{String.valueOf(requestCode)});
+
+        ScheduledAlarm alarm = null;
+        if (cursor.moveToFirst()) {
+            alarm = new ScheduledAlarm(requestCode, cursor.getInt(0), cursor.getLong(1));
+        }
+        cursor.close();
+        QueryStats.end("getScheduledAlarm", start, alarm != null ? 1 : 0);
+        return alarm;
+    }
+
+    public void putScheduledAlarm(ScheduledAlarm alarm) {
+        long start = QueryStats.start();
+        SQLiteStatement statement = statement(SQL_PUT_SCHEDULED_ALARM);
+        synchronized (statement) {
+            statement.bindLong(1, alarm.requestCode);
+            statement.bindLong(2, alarm.dueDay);
+            statement.bindLong(3, alarm.triggerAt);
+            statement.executeInsert();
+            statement.clearBindings();
+        }
+        QueryStats.end("putScheduledAlarm", start, 1);
+    }
+
+    public void deleteScheduledAlarm(int requestCode) {
+        long start = QueryStats.start();
+        SQLiteStatement statement = statement(SQL_DELETE_SCHEDULED_ALARM);
+        int rowsDeleted;
+        synchronized (statement) {
+            statement.bindLong(1, requestCode);
+            rowsDeleted = statement.executeUpdateDelete();
+            statement.clearBindings();
+        }
+        QueryStats.end("deleteScheduledAlarm", start, rowsDeleted);
+    }
+
+    // Count licenses matching the filter (its sort order is ignored)
+    public int getLicenseCount(LicenseFilter filter) {
+        if (filter.isUnfiltered()) {
+            return getLicenseCount();
+        }
+
+        long start = QueryStats.start();
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        String sql;
+        if (filter.equals(LicenseFilter.ALL.withText(filter.getText()))) {
+            // Text only: count FTS matches without touching the table
+            sql = "SELECT COUNT(*) FROM (" + SQL_FTS_MATCH + ")";
+            args.add(LicenseSearch.toFtsQuery(filter.getTerms()));
+        } else {
+            appendFilter(where, args, filter, EpochDay.today());
+            sql = "SELECT COUNT(*) FROM " + TABLE_LICENSES + " WHERE " + where;
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]));
         int count = 0;
         if (cursor.moveToFirst()) {
             count = cursor.getInt(0);
         }
         cursor.close();
-        db.close();
+        QueryStats.end("getLicenseCount(filter)", start, 1);
+        return count;
+    }
+
+    // Types repeat across the whole roster, so rows share one interned string per type
+    private static License readLicense(Cursor cursor) {
+        return new License(
+                cursor.getLong(0),
+                cursor.getString(1),
+                LicenseTypes.intern(cursor.getString(2)),
+                cursor.getString(3),
+                cursor.getString(4)
+        );
+    }
+
+    // Count licenses by status for the dashboard, relative to the given day
+    public StatusCounts getStatusCounts(int today) {
+        long start = QueryStats.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(SQL_STATUS_COUNTS, new String[]{
+                String.valueOf(today), String.valueOf(today + License.EXPIRING_SOON_DAYS)});
+
+        StatusCounts counts = new StatusCounts(0, 0, 0);
+        if (cursor.moveToFirst()) {
+            counts = new StatusCounts(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2));
+        }
+        cursor.close();
+        QueryStats.end("getStatusCounts", start, 1);
+        return counts;
+    }
+
+    // True if a license with this name (ignoring ASCII case) and type exists
+    public boolean licenseExists(String name, String type) {
+        long start = QueryStats.start();
+        SQLiteStatement statement = statement(SQL_LICENSE_EXISTS);
+        boolean exists;
+        synchronized (statement) {
+            statement.bindString(1, name);
+            statement.bindString(2, type);
+            exists = statement.simpleQueryForLong() != 0;
+            statement.clearBindings();
+        }
+        QueryStats.end("licenseExists", start, exists ? 1 : 0);
+        return exists;
+    }
+
+    // Get count of licenses
+    public int getLicenseCount() {
+        long start = QueryStats.start();
+        SQLiteStatement statement = statement(SQL_COUNT);
+        int count;
+        synchronized (statement) {
+            count = (int) statement.simpleQueryForLong();
+        }
+        QueryStats.end("getLicenseCount", start, 1);
         return count;
     }
 }
\ No newline at end of file
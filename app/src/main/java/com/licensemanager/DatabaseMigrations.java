@@ -0,0 +1,134 @@
+package com.licensemanager;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Step-by-step schema upgrades. Each step moves the schema up exactly one version and
+ * keeps every existing row; SQLiteOpenHelper runs the whole upgrade in one transaction.
+ * New installs create the version 1 table and replay the same steps, so there is only
+ * one definition of the current schema.
+ */
+final class DatabaseMigrations {
+    private DatabaseMigrations() {}
+
+    static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            switch (version) {
+                case 2:
+                    migrateToVersion2(db);
+                    break;
+                case 3:
+                    migrateToVersion3(db);
+                    break;
+                case 4:
+                    migrateToVersion4(db);
+                    break;
+                case 5:
+                    migrateToVersion5(db);
+                    break;
+                case 6:
+                    migrateToVersion6(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration to database version " + version);
+            }
+        }
+    }
+
+    // Version 2: indexed INTEGER epoch-day expiry column, backfilled from the text date
+    private static void migrateToVersion2(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + DatabaseHelper.TABLE_LICENSES +
+                " ADD COLUMN " + DatabaseHelper.COLUMN_EXPIRY_DAY + " INTEGER");
+
+        // Parse in Java so stored values match what insert/update compute
+        SQLiteStatement update = db.compileStatement("UPDATE " + DatabaseHelper.TABLE_LICENSES +
+                " SET " + DatabaseHelper.COLUMN_EXPIRY_DAY + " = ? WHERE " + DatabaseHelper.COLUMN_ID + " = ?");
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COLUMN_ID + ", " +
+                DatabaseHelper.COLUMN_EXPIRY_DATE + " FROM " + DatabaseHelper.TABLE_LICENSES, null);
+        try {
+            while (cursor.moveToNext()) {
+                int expiryDay = EpochDay.parse(cursor.getString(1));
+                if (expiryDay == EpochDay.NONE) continue;
+                update.bindLong(1, expiryDay);
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+
+        // Replaces the text-date index used by the first paged list
+        db.execSQL("DROP INDEX IF EXISTS idx_licenses_expiry");
+        db.execSQL("CREATE INDEX idx_licenses_expiry_day ON " + DatabaseHelper.TABLE_LICENSES +
+                "(" + DatabaseHelper.COLUMN_EXPIRY_DAY + ", " + DatabaseHelper.COLUMN_ID + ")");
+    }
+
+    // Version 3: FTS4 index over name/type/description, kept in sync by triggers
+    private static void migrateToVersion3(SQLiteDatabase db) {
+        String fts = DatabaseHelper.TABLE_LICENSES_FTS;
+        String licenses = DatabaseHelper.TABLE_LICENSES;
+        String columns = DatabaseHelper.COLUMN_NAME + ", " + DatabaseHelper.COLUMN_TYPE + ", " +
+                DatabaseHelper.COLUMN_DESCRIPTION;
+        String newValues = "new." + DatabaseHelper.COLUMN_NAME + ", new." + DatabaseHelper.COLUMN_TYPE +
+                ", new." + DatabaseHelper.COLUMN_DESCRIPTION;
+
+        createFtsTable(db);
+
+        db.execSQL("CREATE TRIGGER licenses_fts_before_update BEFORE UPDATE ON " + licenses + " BEGIN " +
+                "DELETE FROM " + fts + " WHERE docid = old." + DatabaseHelper.COLUMN_ID + "; END");
+        db.execSQL("CREATE TRIGGER licenses_fts_before_delete BEFORE DELETE ON " + licenses + " BEGIN " +
+                "DELETE FROM " + fts + " WHERE docid = old." + DatabaseHelper.COLUMN_ID + "; END");
+        db.execSQL("CREATE TRIGGER licenses_fts_after_update AFTER UPDATE ON " + licenses + " BEGIN " +
+                "INSERT INTO " + fts + "(docid, " + columns + ") VALUES (new." + DatabaseHelper.COLUMN_ID +
+                ", " + newValues + "); END");
+        db.execSQL("CREATE TRIGGER licenses_fts_after_insert AFTER INSERT ON " + licenses + " BEGIN " +
+                "INSERT INTO " + fts + "(docid, " + columns + ") VALUES (new." + DatabaseHelper.COLUMN_ID +
+                ", " + newValues + "); END");
+
+        // Index the rows that already exist
+        db.execSQL("INSERT INTO " + fts + "(" + fts + ") VALUES ('rebuild')");
+    }
+
+    // External-content table: the text lives only in licenses, docid = licenses.id.
+    // unicode61 folds case and Latin accents beyond ASCII, as LicenseSearch does.
+    private static void createFtsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + DatabaseHelper.TABLE_LICENSES_FTS + " USING fts4(content=\"" +
+                DatabaseHelper.TABLE_LICENSES + "\", " + DatabaseHelper.COLUMN_NAME + ", " +
+                DatabaseHelper.COLUMN_TYPE + ", " + DatabaseHelper.COLUMN_DESCRIPTION + ", tokenize=unicode61)");
+    }
+
+    // Version 4: ledger of registered alarms, so scheduling can compare against what is
+    // already armed instead of registering everything again. Starts empty; the first
+    // reconciliation fills it.
+    private static void migrateToVersion4(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + DatabaseHelper.TABLE_ALARM_LEDGER + "(" +
+                DatabaseHelper.COLUMN_REQUEST_CODE + " INTEGER PRIMARY KEY," +
+                DatabaseHelper.COLUMN_DUE_DAY + " INTEGER NOT NULL," +
+                DatabaseHelper.COLUMN_TRIGGER_AT + " INTEGER NOT NULL" +
+                ")");
+    }
+
+    // Version 5: indexes for the list's other sort orders and the type filter. Each ends
+    // in id, the keyset tie-breaker, so every page is one index range scan.
+    private static void migrateToVersion5(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX idx_licenses_type_expiry ON " + DatabaseHelper.TABLE_LICENSES + "(" +
+                DatabaseHelper.COLUMN_TYPE + ", " + DatabaseHelper.COLUMN_EXPIRY_DAY + ", " +
+                DatabaseHelper.COLUMN_ID + ")");
+        db.execSQL("CREATE INDEX idx_licenses_name ON " + DatabaseHelper.TABLE_LICENSES + "(" +
+                DatabaseHelper.COLUMN_NAME + " COLLATE NOCASE, " + DatabaseHelper.COLUMN_ID + ")");
+    }
+
+    // Version 6: the full-text index was created with the default simple tokenizer,
+    // which only folds ASCII case, so "\u00c9mile" couldn't be found by its folded
+    // search term. Recreate it with unicode61 and index every row again; the triggers
+    // refer to the table by name and keep working.
+    private static void migrateToVersion6(SQLiteDatabase db) {
+        String fts = DatabaseHelper.TABLE_LICENSES_FTS;
+        db.execSQL("DROP TABLE " + fts);
+        createFtsTable(db);
+        db.execSQL("INSERT INTO " + fts + "(" + fts + ") VALUES ('rebuild')");
+    }
+}
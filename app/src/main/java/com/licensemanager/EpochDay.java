@@ -0,0 +1,145 @@
+package com.licensemanager;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Calendar dates as a count of days since 1970-01-01, so expiry checks are plain
+ * integer arithmetic. Parsing and formatting handle the yyyy-MM-dd strings stored in
+ * the database without allocating a SimpleDateFormat.
+ */
+public final class EpochDay {
+    // Returned for strings that are not a yyyy-MM-dd date
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // Current day and the instants it starts and ends, replaced when the day rolls over
+    private static volatile Today today;
+
+    private EpochDay() {}
+
+    public static int parse(String date) {
+        if (date == null) return NONE;
+
+        int length = date.length();
+        int firstDash = date.indexOf('-');
+        int secondDash = firstDash < 0 ? -1 : date.indexOf('-', firstDash + 1);
+        if (firstDash <= 0 || secondDash < 0) return NONE;
+
+        int year = parseDigits(date, 0, firstDash);
+        int month = parseDigits(date, firstDash + 1, secondDash);
+        int day = parseDigits(date, secondDash + 1, length);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) return NONE;
+
+        return of(year, month, day);
+    }
+
+    private static int parseDigits(String s, int start, int end) {
+        if (start >= end || end - start > 4) return -1;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Days since the epoch for a proleptic Gregorian date (month is 1-12)
+    public static int of(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // First day of the month containing the day
+    public static int startOfMonth(int epochDay) {
+        int civil = toCivil(epochDay);
+        return of(civil / 10000, civil / 100 % 100, 1);
+    }
+
+    // Monday of the (ISO) week containing the day; 1970-01-01 was a Thursday
+    public static int startOfWeek(int epochDay) {
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+
+    // Packs year * 10000 + month * 100 + day for a day count
+    private static int toCivil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    public static String format(int epochDay) {
+        int civil = toCivil(epochDay);
+        int year = civil / 10000;
+        int month = civil / 100 % 100;
+        int day = civil % 100;
+
+        char[] out = new char[10];
+        out[0] = (char) ('0' + year / 1000 % 10);
+        out[1] = (char) ('0' + year / 100 % 10);
+        out[2] = (char) ('0' + year / 10 % 10);
+        out[3] = (char) ('0' + year % 10);
+        out[4] = '-';
+        out[5] = (char) ('0' + month / 10);
+        out[6] = (char) ('0' + month % 10);
+        out[7] = '-';
+        out[8] = (char) ('0' + day / 10);
+        out[9] = (char) ('0' + day % 10);
+        return new String(out);
+    }
+
+    // Local calendar day containing the given instant
+    public static int fromMillis(long millis) {
+        long local = millis + TimeZone.getDefault().getOffset(millis);
+        return (int) Math.floorDiv(local, MILLIS_PER_DAY);
+    }
+
+    // Instant of the given local hour on the day, in milliseconds
+    public static long toMillis(int epochDay, int hourOfDay) {
+        int civil = toCivil(epochDay);
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(civil / 10000, civil / 100 % 100 - 1, civil % 100, hourOfDay, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * The current local day. This is the clock every expiry status is measured
+     * against; it is cached until the day ends, so calling it per row allocates nothing.
+     */
+    public static int today() {
+        long now = System.currentTimeMillis();
+        Today current = today;
+        if (current == null || now < current.startMillis || now >= current.endMillis) {
+            int day = fromMillis(now);
+            current = new Today(day, toMillis(day, 0), toMillis(day + 1, 0));
+            today = current;
+        }
+        return current.day;
+    }
+
+    private static final class Today {
+        final int day;
+        final long startMillis;
+        final long endMillis;
+
+        Today(int day, long startMillis, long endMillis) {
+            this.day = day;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+    }
+}
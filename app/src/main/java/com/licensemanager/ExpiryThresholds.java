@@ -0,0 +1,23 @@
+package com.licensemanager;
+
+/**
+ * The days before expiry on which a license is announced, and the arithmetic on them.
+ * Free of Android types, so the scheduling math can run (and be benchmarked) on a
+ * plain JVM.
+ */
+public final class ExpiryThresholds {
+    // Days before expiry to notify, in descending order
+    static final int[] NOTIFICATION_DAYS = {90, 60, 30, 14, 7, 1, 0};
+
+    private ExpiryThresholds() {}
+
+    // First threshold day of a license on or after fromDay, or EpochDay.NONE
+    public static int nextThresholdDay(int expiryDay, int fromDay) {
+        if (expiryDay == EpochDay.NONE) return EpochDay.NONE;
+        // Offsets are in descending order, so threshold days come out ascending
+        for (int days : NOTIFICATION_DAYS) {
+            if (expiryDay - days >= fromDay) return expiryDay - days;
+        }
+        return EpochDay.NONE;
+    }
+}
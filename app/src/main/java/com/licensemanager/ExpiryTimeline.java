@@ -0,0 +1,344 @@
+package com.licensemanager;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Licenses grouped into week or month buckets by expiry day, for the timeline view.
+ *
+ * The buckets and their per-type counts come from one GROUP BY over the type/expiry
+ * index (DatabaseHelper.getExpiryTimeline). A bucket's licenses are read only when
+ * it is expanded, ROWS_PER_LOAD at a time with the same keyset pages as the list, and
+ * dropped again when it collapses.
+ *
+ * The view is a flat list of items: each bucket's header, then its loaded rows and a
+ * "more" row while it is expanded. The position of every header is kept in an array
+ * that is only recomputed from the bucket that changed onwards, so finding the bucket
+ * of a position (for the sticky header) is a binary search rather than a walk over
+ * every row. All public methods must be called on the main thread.
+ */
+public class ExpiryTimeline {
+    public enum Granularity {
+        WEEK,
+        MONTH;
+
+        int bucketStart(int epochDay) {
+            return this == WEEK ? EpochDay.startOfWeek(epochDay) : EpochDay.startOfMonth(epochDay);
+        }
+
+        // Last day of the bucket starting on the given day
+        int bucketEnd(int startDay) {
+            // Every month is 28 to 31 days long, so 31 days on is always the next month
+            return this == WEEK ? startDay + 6 : EpochDay.startOfMonth(startDay + 31) - 1;
+        }
+    }
+
+    // Item view types
+    public static final int ITEM_HEADER = 0;
+    public static final int ITEM_LICENSE = 1;
+    public static final int ITEM_MORE = 2;
+
+    static final int ROWS_PER_LOAD = 50;
+
+    public interface Callback {
+        // The buckets were reloaded from scratch (new filter or data change)
+        void onReset();
+
+        void onItemRangeInserted(int start, int count);
+
+        void onItemRangeRemoved(int start, int count);
+
+        void onItemChanged(int position);
+    }
+
+    /** One week or month: its license counts by type and, once expanded, its rows. */
+    public static final class Bucket {
+        public final int startDay;
+        // Inclusive
+        public final int endDay;
+        private int total;
+        // Types in ascending order and the count of each
+        private String[] types = new String[2];
+        private int[] typeCounts = new int[2];
+        private int typeCount;
+
+        private boolean expanded;
+        private boolean loading;
+        private boolean hasMore;
+        private final List<License> rows = new ArrayList<>();
+
+        Bucket(int startDay, int endDay) {
+            this.startDay = startDay;
+            this.endDay = endDay;
+        }
+
+        // Counts arrive grouped by type in ascending order, so a type is either the
+        // last one added or a new one
+        void addCount(String type, int count) {
+            total += count;
+            if (typeCount > 0 && Objects.equals(types[typeCount - 1], type)) {
+                typeCounts[typeCount - 1] += count;
+                return;
+            }
+            if (typeCount == types.length) {
+                types = Arrays.copyOf(types, typeCount * 2);
+                typeCounts = Arrays.copyOf(typeCounts, typeCount * 2);
+            }
+            types[typeCount] = type;
+            typeCounts[typeCount++] = count;
+        }
+
+        public int getTotal() { return total; }
+
+        public int getTypeCount() { return typeCount; }
+
+        public String getType(int index) { return types[index]; }
+
+        public int getTypeTotal(int index) { return typeCounts[index]; }
+
+        public boolean isExpanded() { return expanded; }
+
+        public boolean isLoading() { return loading; }
+
+        // Licenses of the bucket not loaded yet
+        public int getRemaining() {
+            return Math.max(0, total - rows.size());
+        }
+
+        // Header, then the loaded rows and the "more" row while expanded
+        int itemCount() {
+            return 1 + (expanded ? rows.size() + (loading || hasMore ? 1 : 0) : 0);
+        }
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Callback> callbacks = new ArrayList<>();
+
+    private List<Bucket> buckets = new ArrayList<>();
+    // Position of each bucket's header; entries after a changed bucket are recomputed
+    private int[] headerPositions = new int[0];
+    private int itemCount;
+    // Start days of the expanded buckets, so a reload (e.g. after an edit) keeps them open
+    private final Set<Integer> expandedStarts = new HashSet<>();
+
+    private LicenseFilter filter = LicenseFilter.ALL;
+    private Granularity granularity = Granularity.MONTH;
+    // Bumped on every refresh so results of stale loads are dropped
+    private int generation;
+    // Bumped on every change to the items, so cached header views know to rebind
+    private int version;
+
+    public ExpiryTimeline(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    public void addCallback(Callback callback) {
+        callbacks.add(callback);
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    public Bucket getBucket(int index) {
+        return buckets.get(index);
+    }
+
+    public boolean isEmpty() {
+        return buckets.isEmpty();
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // Index of the bucket the item at the position belongs to
+    public int bucketIndexAt(int position) {
+        int index = Arrays.binarySearch(headerPositions, 0, buckets.size(), position);
+        return index >= 0 ? index : -(index + 1) - 1;
+    }
+
+    // Position of the bucket's header item
+    public int headerPosition(int bucketIndex) {
+        return headerPositions[bucketIndex];
+    }
+
+    public int getItemType(int position) {
+        int bucketIndex = bucketIndexAt(position);
+        int offset = position - headerPositions[bucketIndex];
+        if (offset == 0) return ITEM_HEADER;
+        return offset - 1 < buckets.get(bucketIndex).rows.size() ? ITEM_LICENSE : ITEM_MORE;
+    }
+
+    // License at a position of type ITEM_LICENSE
+    public License getLicense(int position) {
+        int bucketIndex = bucketIndexAt(position);
+        return buckets.get(bucketIndex).rows.get(position - headerPositions[bucketIndex] - 1);
+    }
+
+    /**
+     * Reload the buckets for the filter (its sort order and fuzzy mode don't apply:
+     * the timeline is always in expiry order). Buckets that were expanded stay
+     * expanded and reload their first rows.
+     */
+    public void refresh(LicenseFilter newFilter, Granularity newGranularity) {
+        if (newGranularity != granularity) expandedStarts.clear();
+        filter = newFilter.withFuzzy(false).withSort(LicenseFilter.Sort.EXPIRY);
+        granularity = newGranularity;
+        final int loadGeneration = ++generation;
+        final LicenseFilter loadFilter = filter;
+        final Granularity loadGranularity = granularity;
+
+        executor.execute(() -> {
+            List<Bucket> loaded = databaseHelper.getExpiryTimeline(loadFilter, loadGranularity);
+            mainHandler.post(() -> {
+                if (loadGeneration != generation) return;
+
+                buckets = loaded;
+                headerPositions = new int[buckets.size()];
+                List<Bucket> reopened = new ArrayList<>();
+                for (Bucket bucket : buckets) {
+                    if (expandedStarts.contains(bucket.startDay)) {
+                        bucket.expanded = true;
+                        bucket.loading = true;
+                        reopened.add(bucket);
+                    }
+                }
+                updatePositionsFrom(0);
+                for (Bucket bucket : reopened) {
+                    loadRows(bucket);
+                }
+
+                for (Callback callback : new ArrayList<>(callbacks)) {
+                    callback.onReset();
+                }
+            });
+        });
+    }
+
+    // Expand a collapsed bucket, loading its first rows, or collapse an expanded one
+    public void toggle(int bucketIndex) {
+        Bucket bucket = buckets.get(bucketIndex);
+        int header = headerPositions[bucketIndex];
+        if (bucket.expanded) {
+            int removed = bucket.itemCount() - 1;
+            bucket.expanded = false;
+            bucket.loading = false;
+            bucket.hasMore = false;
+            bucket.rows.clear();
+            expandedStarts.remove(bucket.startDay);
+            updatePositionsFrom(bucketIndex);
+            notifyRemoved(header + 1, removed);
+        } else {
+            bucket.expanded = true;
+            bucket.loading = true;
+            expandedStarts.add(bucket.startDay);
+            updatePositionsFrom(bucketIndex);
+            // The "more" row shows progress until the first rows arrive
+            notifyInserted(header + 1, 1);
+            loadRows(bucket);
+        }
+        notifyChanged(header);
+    }
+
+    // Load the next rows of an expanded bucket, from its "more" row
+    public void loadMore(int bucketIndex) {
+        Bucket bucket = buckets.get(bucketIndex);
+        if (!bucket.expanded || bucket.loading || !bucket.hasMore) return;
+
+        bucket.loading = true;
+        notifyChanged(headerPositions[bucketIndex] + bucket.itemCount() - 1);
+        loadRows(bucket);
+    }
+
+    public void close() {
+        generation++;
+        callbacks.clear();
+        executor.shutdownNow();
+    }
+
+    // Reads the page after the bucket's last loaded row, within the bucket's days
+    private void loadRows(final Bucket bucket) {
+        final int loadGeneration = generation;
+        final License after = bucket.rows.isEmpty() ? null : bucket.rows.get(bucket.rows.size() - 1);
+        int fromDay = filter.getFromDay() != EpochDay.NONE
+                ? Math.max(filter.getFromDay(), bucket.startDay) : bucket.startDay;
+        int toDay = filter.getToDay() != EpochDay.NONE
+                ? Math.min(filter.getToDay(), bucket.endDay) : bucket.endDay;
+        final LicenseFilter bucketFilter = filter.withExpiryRange(fromDay, toDay);
+
+        executor.execute(() -> {
+            List<License> page = databaseHelper.getLicensesPage(bucketFilter, after, ROWS_PER_LOAD);
+            mainHandler.post(() -> {
+                // Dropped if the timeline was reloaded or the bucket collapsed meanwhile
+                if (loadGeneration != generation || !bucket.expanded || !bucket.loading) return;
+                int bucketIndex = buckets.indexOf(bucket);
+                if (bucketIndex < 0) return;
+
+                int morePosition = headerPositions[bucketIndex] + 1 + bucket.rows.size();
+                bucket.rows.addAll(page);
+                bucket.loading = false;
+                bucket.hasMore = page.size() == ROWS_PER_LOAD;
+                updatePositionsFrom(bucketIndex);
+
+                notifyInserted(morePosition, page.size());
+                if (bucket.hasMore) {
+                    notifyChanged(morePosition + page.size());
+                } else {
+                    notifyRemoved(morePosition + page.size(), 1);
+                }
+            });
+        });
+    }
+
+    // Recompute header positions from the bucket onwards; the ones before it are unchanged
+    private void updatePositionsFrom(int bucketIndex) {
+        int position = bucketIndex == 0 ? 0
+                : headerPositions[bucketIndex - 1] + buckets.get(bucketIndex - 1).itemCount();
+        for (int i = bucketIndex; i < buckets.size(); i++) {
+            headerPositions[i] = position;
+            position += buckets.get(i).itemCount();
+        }
+        itemCount = position;
+        version++;
+    }
+
+    private void notifyInserted(int start, int count) {
+        if (count == 0) return;
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onItemRangeInserted(start, count);
+        }
+    }
+
+    private void notifyRemoved(int start, int count) {
+        if (count == 0) return;
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onItemRangeRemoved(start, count);
+        }
+    }
+
+    private void notifyChanged(int position) {
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onItemChanged(position);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.licensemanager;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of a CSV import: how many rows were read and imported, and the line number
+ * and reason for each rejected row. Only the first MAX_REPORTED_ERRORS rejections are
+ * kept, so the report stays small even for a file that is rejected wholesale; the
+ * counts always cover every row.
+ */
+public class ImportReport {
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private int rowCount;
+    private int importedCount;
+    private int duplicateCount;
+    private int errorCount;
+    private boolean cancelled;
+    private int[] errorLines = new int[16];
+    private String[] errors = new String[16];
+
+    void addRows(int count) {
+        rowCount += count;
+    }
+
+    void addImported(int count) {
+        importedCount += count;
+    }
+
+    void addDuplicate(int line, String error) {
+        duplicateCount++;
+        addError(line, error);
+    }
+
+    void addError(int line, String error) {
+        if (errorCount < MAX_REPORTED_ERRORS) {
+            if (errorCount == errorLines.length) {
+                errorLines = Arrays.copyOf(errorLines, errorCount * 2);
+                errors = Arrays.copyOf(errors, errorCount * 2);
+            }
+            errorLines[errorCount] = line;
+            errors[errorCount] = error;
+        }
+        errorCount++;
+    }
+
+    void setCancelled() {
+        cancelled = true;
+    }
+
+    // Data rows read from the file (the header isn't counted)
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    // Rejected rows that were duplicates of an existing license or of an earlier row
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    // Every rejected row, duplicates included
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    // True if the import was stopped early; rows imported before that are kept
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Rejections available through getErrorLine/getError, at most MAX_REPORTED_ERRORS
+    public int getReportedErrorCount() {
+        return Math.min(errorCount, MAX_REPORTED_ERRORS);
+    }
+
+    // Line of the file the rejected row starts on (1-based, the header is line 1)
+    public int getErrorLine(int index) {
+        return errorLines[index];
+    }
+
+    public String getError(int index) {
+        return errors[index];
+    }
+}
@@ -1,23 +1,28 @@
 package com.licensemanager;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.concurrent.TimeUnit;
-
 public class License {
+    // Status values returned by getStatus
+    public static final int STATUS_ACTIVE = 0;
+    public static final int STATUS_EXPIRING_SOON = 1;
+    public static final int STATUS_EXPIRED = 2;
+
+    // Licenses expiring within this many days count as expiring soon
+    public static final int EXPIRING_SOON_DAYS = 90; // 3 months
+
     private long id;
     private String name;
     private String type;
     private String expiryDate;
     private String description;
+    // expiryDate parsed once, as days since 1970-01-01 (EpochDay.NONE if unparseable)
+    private int expiryDay = EpochDay.NONE;
 
     public License() {}
 
     public License(String name, String type, String expiryDate, String description) {
         this.name = name;
         this.type = type;
-        this.expiryDate = expiryDate;
+        setExpiryDate(expiryDate);
         this.description = description;
     }
 
@@ -25,7 +30,7 @@ public class License {
         this.id = id;
         this.name = name;
         this.type = type;
-        this.expiryDate = expiryDate;
+        setExpiryDate(expiryDate);
         this.description = description;
     }
 
@@ -40,71 +45,88 @@ public class License {
     public void setType(String type) { this.type = type; }
 
     public String getExpiryDate() { return expiryDate; }
-    public void setExpiryDate(String expiryDate) { this.expiryDate = expiryDate; }
+    public void setExpiryDate(String expiryDate) {
+        this.expiryDate = expiryDate;
+        this.expiryDay = EpochDay.parse(expiryDate);
+    }
+
+    public int getExpiryDay() { return expiryDay; }
 
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
 
-    // Utility methods
+    // Utility methods. The overloads taking 'today' (an EpochDay) let callers that
+    // check many licenses read the clock once; none of them parse or allocate.
+    // A license is valid through its expiry date and expired from the day after.
     public boolean isExpired() {
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            Date expiry = sdf.parse(expiryDate);
-            Date today = new Date();
-            return expiry != null && expiry.before(today);
-        } catch (Exception e) {
-            return false;
-        }
+        return isExpired(EpochDay.today());
+    }
+
+    public boolean isExpired(int today) {
+        return expiryDay != EpochDay.NONE && expiryDay < today;
     }
 
     public boolean isExpiringSoon() {
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            Date expiry = sdf.parse(expiryDate);
-            Date today = new Date();
-            if (expiry != null && expiry.after(today)) {
-                long diff = expiry.getTime() - today.getTime();
-                long days = TimeUnit.DAYS.convert(diff, TimeUnit.MILLISECONDS);
-                return days <= 90; // 3 months
-            }
-        } catch (Exception e) {
-            return false;
-        }
-        return false;
+        return isExpiringSoon(EpochDay.today());
+    }
+
+    public boolean isExpiringSoon(int today) {
+        return expiryDay != EpochDay.NONE && expiryDay >= today && expiryDay - today <= EXPIRING_SOON_DAYS;
     }
 
     public long getDaysUntilExpiry() {
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            Date expiry = sdf.parse(expiryDate);
-            Date today = new Date();
-            if (expiry != null) {
-                long diff = expiry.getTime() - today.getTime();
-                return TimeUnit.DAYS.convert(diff, TimeUnit.MILLISECONDS);
-            }
-        } catch (Exception e) {
-            return 0;
+        return getDaysUntilExpiry(EpochDay.today());
+    }
+
+    public long getDaysUntilExpiry(int today) {
+        return expiryDay != EpochDay.NONE ? expiryDay - today : 0;
+    }
+
+    public int getStatus(int today) {
+        return statusOf(expiryDay, today);
+    }
+
+    // Status of a license expiring on the given day (EpochDay.NONE counts as active),
+    // for callers that keep expiry days without License objects
+    public static int statusOf(int expiryDay, int today) {
+        if (expiryDay == EpochDay.NONE) {
+            return STATUS_ACTIVE;
+        } else if (expiryDay < today) {
+            return STATUS_EXPIRED;
+        } else if (expiryDay - today <= EXPIRING_SOON_DAYS) {
+            return STATUS_EXPIRING_SOON;
+        } else {
+            return STATUS_ACTIVE;
         }
-        return 0;
     }
 
     public String getStatusColor() {
-        if (isExpired()) {
-            return "#EF4444"; // red
-        } else if (isExpiringSoon()) {
-            return "#F59E0B"; // yellow
-        } else {
-            return "#10B981"; // green
+        return getStatusColor(EpochDay.today());
+    }
+
+    public String getStatusColor(int today) {
+        switch (getStatus(today)) {
+            case STATUS_EXPIRED:
+                return "#EF4444"; // red
+            case STATUS_EXPIRING_SOON:
+                return "#F59E0B"; // yellow
+            default:
+                return "#10B981"; // green
         }
     }
 
     public String getStatusText() {
-        if (isExpired()) {
-            return "Expired";
-        } else if (isExpiringSoon()) {
-            return "Expiring Soon";
-        } else {
-            return "Active";
+        return getStatusText(EpochDay.today());
+    }
+
+    public String getStatusText(int today) {
+        switch (getStatus(today)) {
+            case STATUS_EXPIRED:
+                return "Expired";
+            case STATUS_EXPIRING_SOON:
+                return "Expiring Soon";
+            default:
+                return "Active";
         }
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package com.licensemanager;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,57 +12,114 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-public class LicenseAdapter extends RecyclerView.Adapter<LicenseAdapter.LicenseViewHolder> {
-    private List<License> licenses;
+public class LicenseAdapter extends RecyclerView.Adapter<LicenseAdapter.LicenseViewHolder>
+        implements LicensePagedList.Callback {
+    // Reset diffs run here, one at a time, so a large roster never blocks the main thread
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static final int COLOR_EXPIRED = Color.parseColor("#EF4444");
+    private static final int COLOR_EXPIRING = Color.parseColor("#F59E0B");
+    private static final int COLOR_ACTIVE = Color.parseColor("#10B981");
+
+    private LicensePagedList licenses;
     private Context context;
+    // Displayed rows: an immutable snapshot of the paged list, replaced on every change
+    private List<License> shown = Collections.emptyList();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every reset; a diff that finishes after a newer reset is dropped
+    private int resetGeneration;
+    private boolean diffing;
+    // Rows [loadedStart, loadedEnd) filled by pages that arrived while a diff was running
+    private int loadedStart = Integer.MAX_VALUE;
+    private int loadedEnd;
 
-    public LicenseAdapter(Context context, List<License> licenses) {
+    public LicenseAdapter(Context context, LicensePagedList licenses) {
         this.context = context;
         this.licenses = licenses;
+        setHasStableIds(true);
+        licenses.addCallback(this);
     }
 
     @NonNull
     @Override
     public LicenseViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_license, parent, false);
-        return new LicenseViewHolder(view);
+        LicenseViewHolder holder = new LicenseViewHolder(view);
+        // Created once per view holder rather than once per bind
+        holder.openEditor = v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) return;
+            License license = shown.get(position);
+            if (license == null) return;
+
+            Intent intent = new Intent(context, AddEditLicenseActivity.class);
+            intent.putExtra("license_id", license.getId());
+            context.startActivity(intent);
+        };
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull LicenseViewHolder holder, int position) {
-        License license = licenses.get(position);
+        // Reading the live list triggers loading of the pages around the position
+        licenses.get(position);
+        License license = shown.get(position);
+        if (license == null) {
+            bindPlaceholder(holder);
+            return;
+        }
         
+        bindLicense(holder, license, EpochDay.today());
+        holder.cardView.setOnClickListener(holder.openEditor);
+    }
+
+    // Fill a license card; also used by TimelineAdapter for the rows of a bucket.
+    // Status uses the expiry day parsed when the row was loaded.
+    static void bindLicense(@NonNull LicenseViewHolder holder, License license, int today) {
         holder.licenseName.setText(license.getName());
         holder.licenseType.setText(license.getType());
         holder.expiryDate.setText(license.getExpiryDate());
         
         // Set status badge
-        holder.statusBadge.setText(license.getStatusText());
-        holder.statusBadge.setBackgroundColor(Color.parseColor(license.getStatusColor()));
+        holder.statusBadge.setText(license.getStatusText(today));
+        switch (license.getStatus(today)) {
+            case License.STATUS_EXPIRED:
+                holder.statusBadge.setBackgroundColor(COLOR_EXPIRED);
+                break;
+            case License.STATUS_EXPIRING_SOON:
+                holder.statusBadge.setBackgroundColor(COLOR_EXPIRING);
+                break;
+            default:
+                holder.statusBadge.setBackgroundColor(COLOR_ACTIVE);
+                break;
+        }
         
         // Set days remaining
-        long days = license.getDaysUntilExpiry();
-        if (license.isExpired()) {
+        long days = license.getDaysUntilExpiry(today);
+        if (license.isExpired(today)) {
             holder.daysRemaining.setText("Expired");
-            holder.daysRemaining.setTextColor(Color.parseColor("#EF4444"));
+            holder.daysRemaining.setTextColor(COLOR_EXPIRED);
         } else if (days == 0) {
             holder.daysRemaining.setText("Today");
-            holder.daysRemaining.setTextColor(Color.parseColor("#F59E0B"));
+            holder.daysRemaining.setTextColor(COLOR_EXPIRING);
         } else if (days == 1) {
             holder.daysRemaining.setText("1 day");
-            holder.daysRemaining.setTextColor(Color.parseColor("#F59E0B"));
+            holder.daysRemaining.setTextColor(COLOR_EXPIRING);
         } else if (days <= 30) {
             holder.daysRemaining.setText(days + " days");
-            holder.daysRemaining.setTextColor(Color.parseColor("#F59E0B"));
+            holder.daysRemaining.setTextColor(COLOR_EXPIRING);
         } else {
             holder.daysRemaining.setText(days + " days");
-            holder.daysRemaining.setTextColor(Color.parseColor("#10B981"));
+            holder.daysRemaining.setTextColor(COLOR_ACTIVE);
         }
         
         // Show description if available
@@ -70,28 +129,128 @@ public class LicenseAdapter extends RecyclerView.Adapter<LicenseAdapter.LicenseV
         } else {
             holder.description.setVisibility(View.GONE);
         }
-        
-        // Set click listener to edit license
-        holder.cardView.setOnClickListener(v -> {
-            Intent intent = new Intent(context, AddEditLicenseActivity.class);
-            intent.putExtra("license_id", license.getId());
-            context.startActivity(intent);
-        });
+    }
+
+    // Row whose page is not in memory yet; rebound once the page arrives
+    private void bindPlaceholder(@NonNull LicenseViewHolder holder) {
+        holder.licenseName.setText("");
+        holder.licenseType.setText("");
+        holder.expiryDate.setText("");
+        holder.daysRemaining.setText("");
+        holder.statusBadge.setText("");
+        holder.statusBadge.setBackgroundColor(Color.LTGRAY);
+        holder.description.setVisibility(View.GONE);
+        holder.cardView.setOnClickListener(null);
     }
 
     @Override
     public int getItemCount() {
-        return licenses.size();
+        return shown.size();
     }
 
-    public void updateLicenses(List<License> newLicenses) {
-        this.licenses = newLicenses;
-        notifyDataSetChanged();
+    @Override
+    public long getItemId(int position) {
+        License license = shown.get(position);
+        // Placeholders get IDs that can't collide with database row IDs
+        return license != null ? license.getId() : Long.MIN_VALUE + position;
+    }
+
+    // The new rows are diffed against the shown ones on DIFF_EXECUTOR and only the
+    // moves, inserts, removals and changes it finds are dispatched; the old rows stay
+    // on screen until then
+    @Override
+    public void onReset() {
+        final List<License> oldRows = shown;
+        final List<License> newRows = licenses.snapshot();
+        final int generation = ++resetGeneration;
+        loadedStart = Integer.MAX_VALUE;
+        loadedEnd = 0;
+
+        // Nothing to match up when either side is empty
+        if (oldRows.isEmpty() || newRows.isEmpty()) {
+            diffing = false;
+            shown = newRows;
+            if (!oldRows.isEmpty()) notifyItemRangeRemoved(0, oldRows.size());
+            if (!newRows.isEmpty()) notifyItemRangeInserted(0, newRows.size());
+            return;
+        }
+
+        diffing = true;
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new RowDiff(oldRows, newRows), false);
+            mainHandler.post(() -> {
+                if (generation != resetGeneration) return;
+                diffing = false;
+                shown = newRows;
+                result.dispatchUpdatesTo(this);
+                if (loadedEnd > loadedStart) {
+                    shown = licenses.snapshot();
+                    notifyItemRangeChanged(loadedStart, loadedEnd - loadedStart);
+                }
+            });
+        });
+    }
+
+    // A loaded page only fills placeholders in place; nothing moves, so nothing is diffed.
+    // While a reset is being diffed its positions don't match the shown rows yet, so the
+    // range is rebound once the diff has been dispatched.
+    @Override
+    public void onRangeLoaded(int start, int count) {
+        if (diffing) {
+            loadedStart = Math.min(loadedStart, start);
+            loadedEnd = Math.max(loadedEnd, start + count);
+            return;
+        }
+        shown = licenses.snapshot();
+        notifyItemRangeChanged(start, count);
+    }
+
+    // Rows are the same item if they have the same database ID; placeholders (null) only
+    // match each other. Reads nothing but the two immutable snapshots, so it can run on
+    // any thread.
+    private static class RowDiff extends DiffUtil.Callback {
+        private final List<License> oldRows;
+        private final List<License> newRows;
+
+        RowDiff(List<License> oldRows, List<License> newRows) {
+            this.oldRows = oldRows;
+            this.newRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldRows.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newRows.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            License oldItem = oldRows.get(oldPosition);
+            License newItem = newRows.get(newPosition);
+            if (oldItem == null || newItem == null) return oldItem == newItem;
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            License oldItem = oldRows.get(oldPosition);
+            License newItem = newRows.get(newPosition);
+            if (oldItem == null || newItem == null) return oldItem == newItem;
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getType(), newItem.getType())
+                    && Objects.equals(oldItem.getExpiryDate(), newItem.getExpiryDate())
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription());
+        }
     }
 
     public static class LicenseViewHolder extends RecyclerView.ViewHolder {
         CardView cardView;
         TextView licenseName, licenseType, expiryDate, daysRemaining, description, statusBadge;
+        View.OnClickListener openEditor;
 
         public LicenseViewHolder(@NonNull View itemView) {
             super(itemView);
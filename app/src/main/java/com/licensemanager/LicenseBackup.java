@@ -0,0 +1,306 @@
+package com.licensemanager;
+
+import android.database.Cursor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the licenses table for backup and restore.
+ *
+ * Layout, all integers big-endian:
+ *   header   "LMBK", int format version
+ *   records  int body length, byte kind, body
+ *            TYPE:    UTF-8 type name; the n-th TYPE record defines type index n
+ *            LICENSE: long id, int type index (-1 for none), then name, expiry date
+ *                     and description as int byte length (-1 for null) + UTF-8 bytes
+ *            END:     int number of LICENSE records
+ *   trailer  int CRC32 of every byte before it
+ *
+ * Types are defined the first time a row uses one, so the file is written in a single
+ * pass over the cursor and each row carries a small index instead of the type name.
+ * Both directions go through one heap buffer and an NIO channel, so memory doesn't
+ * grow with the table.
+ */
+public final class LicenseBackup {
+    static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'L', 'M', 'B', 'K'};
+
+    private static final byte KIND_TYPE = 1;
+    private static final byte KIND_LICENSE = 2;
+    private static final byte KIND_END = 3;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Guards against reading a corrupt length as a huge allocation
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private LicenseBackup() {}
+
+    /**
+     * Write every row of a cursor returning id, name, type, expiry_date and description
+     * (in that order) and return the number of rows written.
+     */
+    static int write(Cursor cursor, WritableByteChannel out) throws IOException {
+        Output output = new Output(out);
+        output.header();
+
+        Map<String, Integer> typeIndexes = new HashMap<>();
+        int count = 0;
+        while (cursor.moveToNext()) {
+            int typeIndex = -1;
+            if (!cursor.isNull(2)) {
+                String type = cursor.getString(2);
+                Integer index = typeIndexes.get(type);
+                if (index == null) {
+                    index = typeIndexes.size();
+                    typeIndexes.put(type, index);
+                    output.typeRecord(type);
+                }
+                typeIndex = index;
+            }
+            output.licenseRecord(cursor.getLong(0), typeIndex, cursor.getString(1),
+                    cursor.getString(3), cursor.getString(4));
+            count++;
+        }
+
+        output.endRecord(count);
+        output.finish();
+        return count;
+    }
+
+    /**
+     * Reads the licenses of a snapshot one at a time. next() returns null only once
+     * the END record and the checksum have been read and matched, so a caller that
+     * writes rows as it goes should commit only after that.
+     */
+    public static final class Reader {
+        private final ReadableByteChannel in;
+        private final ByteBuffer buffer;
+        private final CRC32 crc = new CRC32();
+        private final List<String> types = new ArrayList<>();
+        private byte[] recordBytes = new byte[256];
+        private final byte[] intBytes = new byte[4];
+        private int licenseCount;
+        private boolean finished;
+
+        public Reader(ReadableByteChannel in) throws IOException {
+            this.in = in;
+            this.buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            buffer.flip();
+
+            byte[] magic = new byte[MAGIC.length];
+            readFully(magic, 0, magic.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a license backup");
+            }
+            int version = readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported backup version " + version);
+            }
+        }
+
+        // The next license, with its original id, or null at the verified end of the file
+        public License next() throws IOException {
+            while (!finished) {
+                int length = readInt();
+                if (length < 1 || length > MAX_RECORD_BYTES) {
+                    throw new IOException("Corrupt backup: record length " + length);
+                }
+                if (recordBytes.length < length) {
+                    recordBytes = new byte[Math.max(length, recordBytes.length * 2)];
+                }
+                readFully(recordBytes, 0, length);
+                ByteBuffer record = ByteBuffer.wrap(recordBytes, 0, length);
+                try {
+                    License license = readRecord(record, length);
+                    if (license != null) return license;
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("Corrupt backup: record shorter than its contents", e);
+                }
+            }
+            return null;
+        }
+
+        // Handles one record; returns its license, or null for the other kinds
+        private License readRecord(ByteBuffer record, int length) throws IOException {
+            byte kind = record.get();
+            switch (kind) {
+                case KIND_TYPE:
+                    types.add(LicenseTypes.intern(new String(recordBytes, 1, length - 1, StandardCharsets.UTF_8)));
+                    return null;
+                case KIND_LICENSE:
+                    licenseCount++;
+                    return readLicense(record);
+                case KIND_END:
+                    int expected = record.getInt();
+                    if (expected != licenseCount) {
+                        throw new IOException("Corrupt backup: " + licenseCount + " of " + expected + " rows");
+                    }
+                    verifyChecksum();
+                    finished = true;
+                    return null;
+                default:
+                    throw new IOException("Corrupt backup: record kind " + kind);
+            }
+        }
+
+        private License readLicense(ByteBuffer record) throws IOException {
+            long id = record.getLong();
+            int typeIndex = record.getInt();
+            if (typeIndex < -1 || typeIndex >= types.size()) {
+                throw new IOException("Corrupt backup: type index " + typeIndex);
+            }
+            String name = readString(record);
+            String expiryDate = readString(record);
+            String description = readString(record);
+            return new License(id, name, typeIndex >= 0 ? types.get(typeIndex) : null, expiryDate, description);
+        }
+
+        private static String readString(ByteBuffer record) throws IOException {
+            int length = record.getInt();
+            if (length == -1) return null;
+            if (length < 0 || length > record.remaining()) {
+                throw new IOException("Corrupt backup: string length " + length);
+            }
+            String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+            record.position(record.position() + length);
+            return value;
+        }
+
+        private void verifyChecksum() throws IOException {
+            // The trailer itself isn't covered, so take the sum before reading it
+            int expected = (int) crc.getValue();
+            if (readInt() != expected) {
+                throw new IOException("Corrupt backup: checksum mismatch");
+            }
+        }
+
+        private int readInt() throws IOException {
+            readFully(intBytes, 0, 4);
+            return (intBytes[0] & 0xff) << 24 | (intBytes[1] & 0xff) << 16 | (intBytes[2] & 0xff) << 8 | intBytes[3] & 0xff;
+        }
+
+        // Fill dst from the channel, adding the bytes to the running checksum
+        private void readFully(byte[] dst, int offset, int length) throws IOException {
+            int end = offset + length;
+            while (offset < end) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read;
+                    do {
+                        read = in.read(buffer);
+                    } while (read == 0);
+                    buffer.flip();
+                    if (read < 0) throw new EOFException("Backup is truncated");
+                }
+                int chunk = Math.min(end - offset, buffer.remaining());
+                int start = buffer.position();
+                buffer.get(dst, offset, chunk);
+                // CRC32.update(ByteBuffer) needs API 26, so sum from the backing array
+                crc.update(buffer.array(), start, chunk);
+                offset += chunk;
+            }
+        }
+    }
+
+    // Buffered writer of records that keeps the running checksum
+    private static final class Output {
+        private final WritableByteChannel out;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+
+        Output(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        void header() throws IOException {
+            ensure(MAGIC.length + 4);
+            buffer.put(MAGIC).putInt(FORMAT_VERSION);
+        }
+
+        void typeRecord(String type) throws IOException {
+            byte[] name = type.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + 1 + name.length);
+            buffer.putInt(1 + name.length).put(KIND_TYPE).put(name);
+        }
+
+        void licenseRecord(long id, int typeIndex, String name, String expiryDate, String description)
+                throws IOException {
+            byte[] nameBytes = bytes(name);
+            byte[] expiryBytes = bytes(expiryDate);
+            byte[] descriptionBytes = bytes(description);
+            int length = 1 + 8 + 4 + stringSize(nameBytes) + stringSize(expiryBytes) + stringSize(descriptionBytes);
+            if (length > MAX_RECORD_BYTES) {
+                throw new IOException("License " + id + " is too large to back up");
+            }
+
+            ensure(4 + length);
+            buffer.putInt(length).put(KIND_LICENSE).putLong(id).putInt(typeIndex);
+            putString(nameBytes);
+            putString(expiryBytes);
+            putString(descriptionBytes);
+        }
+
+        void endRecord(int count) throws IOException {
+            ensure(4 + 1 + 4);
+            buffer.putInt(1 + 4).put(KIND_END).putInt(count);
+        }
+
+        // Append the checksum of everything written so far and flush
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            writeFully();
+        }
+
+        private static byte[] bytes(String value) {
+            return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+        }
+
+        private static int stringSize(byte[] value) {
+            return 4 + (value != null ? value.length : 0);
+        }
+
+        private void putString(byte[] value) {
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(value.length).put(value);
+            }
+        }
+
+        // Make room for a record, growing the buffer for one larger than it
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            writeFully();
+        }
+
+        private void writeFully() throws IOException {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
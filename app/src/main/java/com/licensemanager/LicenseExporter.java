@@ -0,0 +1,191 @@
+package com.licensemanager;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes the roster to CSV or JSON Lines straight from the forward-only cursor that
+ * DatabaseHelper.exportLicenses streams through it. Each text column is copied into one reused
+ * char buffer and escaped on the way into the writer, so the export allocates no
+ * String per row and holds nothing but the cursor window and the writer's buffer,
+ * whatever the size of the table.
+ */
+public final class LicenseExporter {
+    public enum Format {
+        // RFC 4180: header row, CRLF line ends, fields quoted only when they need it
+        CSV("text/csv", "csv"),
+        // One JSON object per line
+        JSON_LINES("application/x-ndjson", "jsonl");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    public interface ProgressListener {
+        // Called on the exporting thread every PROGRESS_INTERVAL rows and at the end
+        void onProgress(int written, int total);
+    }
+
+    // Rows between progress reports and cancellation checks
+    static final int PROGRESS_INTERVAL = 1000;
+
+    // Column names in export order; the cursor must return them in this order
+    private static final String[] COLUMNS = {
+            DatabaseHelper.COLUMN_ID, DatabaseHelper.COLUMN_NAME, DatabaseHelper.COLUMN_TYPE,
+            DatabaseHelper.COLUMN_EXPIRY_DATE, DatabaseHelper.COLUMN_DESCRIPTION
+    };
+
+    // What precedes each column's value in a JSON Lines row: {"id":  ,"name":  ...
+    private static final String[] JSON_KEYS = new String[COLUMNS.length];
+    static {
+        for (int column = 0; column < COLUMNS.length; column++) {
+            JSON_KEYS[column] = (column == 0 ? "{\"" : ",\"") + COLUMNS[column] + "\":";
+        }
+    }
+
+    // Valid in JSON strings but line ends to JavaScript, so they are escaped too
+    private static final char LINE_SEPARATOR = (char) 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = (char) 0x2029;
+
+    private final Writer out;
+    private final Format format;
+    // Holds one column value at a time; grown by the cursor when a value doesn't fit
+    private final CharArrayBuffer buffer = new CharArrayBuffer(256);
+
+    public LicenseExporter(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Write every row of the cursor and return how many were written. total is only
+     * used for progress (the cursor isn't asked for its count, which would read the
+     * whole result twice). Throws OperationCanceledException once the signal is
+     * cancelled; the output is then incomplete and the caller should discard it.
+     */
+    public int export(Cursor cursor, int total, CancellationSignal cancellationSignal,
+                      ProgressListener progress) throws IOException {
+        if (format == Format.CSV) {
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (column > 0) out.write(',');
+                out.write(COLUMNS[column]);
+            }
+            out.write("\r\n");
+        }
+
+        int written = 0;
+        while (cursor.moveToNext()) {
+            if (format == Format.CSV) {
+                writeCsvRow(cursor);
+            } else {
+                writeJsonRow(cursor);
+            }
+            written++;
+
+            if (written % PROGRESS_INTERVAL == 0) {
+                if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+                if (progress != null) progress.onProgress(written, Math.max(total, written));
+            }
+        }
+        out.flush();
+        if (progress != null) progress.onProgress(written, written);
+        return written;
+    }
+
+    private void writeCsvRow(Cursor cursor) throws IOException {
+        out.write(Long.toString(cursor.getLong(0)));
+        for (int column = 1; column < COLUMNS.length; column++) {
+            out.write(',');
+            // NULL and empty are both an empty field
+            if (cursor.isNull(column)) continue;
+            cursor.copyStringToBuffer(column, buffer);
+            writeCsvField(buffer.data, buffer.sizeCopied);
+        }
+        out.write("\r\n");
+    }
+
+    private void writeCsvField(char[] chars, int length) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < length && !quote; i++) {
+            char c = chars[i];
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(chars, 0, length);
+            return;
+        }
+
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (chars[i] == '"') {
+                // Write up to and including the quote, then double it
+                out.write(chars, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(chars, start, length - start);
+        out.write('"');
+    }
+
+    private void writeJsonRow(Cursor cursor) throws IOException {
+        out.write(JSON_KEYS[0]);
+        out.write(Long.toString(cursor.getLong(0)));
+        for (int column = 1; column < COLUMNS.length; column++) {
+            out.write(JSON_KEYS[column]);
+            if (cursor.isNull(column)) {
+                out.write("null");
+            } else {
+                cursor.copyStringToBuffer(column, buffer);
+                writeJsonString(buffer.data, buffer.sizeCopied);
+            }
+        }
+        out.write("}\n");
+    }
+
+    private void writeJsonString(char[] chars, int length) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c >= 0x20 && c != '"' && c != '\\' && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR) continue;
+
+            out.write(chars, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    // Other control characters, and the separators JavaScript treats as line ends
+                    out.write(String.format(Locale.US, "\\u%04x", (int) c));
+                    break;
+            }
+        }
+        out.write(chars, start, length - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,151 @@
+package com.licensemanager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What the license list shows: a status set, a type set, an expiry window, search
+ * text and a sort order. DatabaseHelper turns it into one parameterized query, so
+ * only the rows on screen are ever read. In fuzzy mode the text is matched against
+ * employee names with typos allowed instead (see NameTrigramIndex). Immutable; the with* methods return a copy
+ * with one part changed.
+ */
+public final class LicenseFilter {
+    public enum Sort {
+        // Soonest expiry first; served by idx_licenses_expiry_day
+        EXPIRY,
+        // Case-insensitive by employee name; served by idx_licenses_name
+        NAME,
+        // By type, then soonest expiry; served by idx_licenses_type_expiry
+        TYPE
+    }
+
+    // Status bits for withStatuses, one per License.STATUS_* value
+    public static final int STATUS_ACTIVE = 1 << License.STATUS_ACTIVE;
+    public static final int STATUS_EXPIRING_SOON = 1 << License.STATUS_EXPIRING_SOON;
+    public static final int STATUS_EXPIRED = 1 << License.STATUS_EXPIRED;
+    static final int ALL_STATUSES = STATUS_ACTIVE | STATUS_EXPIRING_SOON | STATUS_EXPIRED;
+
+    public static final LicenseFilter ALL = new LicenseFilter(
+            "", ALL_STATUSES, Collections.<String>emptySet(), EpochDay.NONE, EpochDay.NONE, Sort.EXPIRY, false);
+
+    private final String text;
+    private final String[] terms;
+    private final int statuses;
+    private final Set<String> types;
+    private final int fromDay;
+    private final int toDay;
+    private final Sort sort;
+    private final boolean fuzzy;
+
+    private LicenseFilter(String text, int statuses, Set<String> types, int fromDay, int toDay, Sort sort,
+                          boolean fuzzy) {
+        this.text = text;
+        this.terms = LicenseSearch.terms(text);
+        this.statuses = statuses;
+        this.types = types;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.sort = sort;
+        this.fuzzy = fuzzy;
+    }
+
+    // Free text matched as word prefixes in name, type or notes (see LicenseSearch)
+    public LicenseFilter withText(String text) {
+        return new LicenseFilter(text != null ? text : "", statuses, types, fromDay, toDay, sort, fuzzy);
+    }
+
+    // Any combination of the STATUS_* bits; 0 or all three means every status
+    public LicenseFilter withStatuses(int statuses) {
+        statuses &= ALL_STATUSES;
+        return new LicenseFilter(text, statuses == 0 ? ALL_STATUSES : statuses, types, fromDay, toDay, sort, fuzzy);
+    }
+
+    // Exact license types to show; empty means every type
+    public LicenseFilter withTypes(Collection<String> types) {
+        Set<String> copy = types.isEmpty() ? Collections.<String>emptySet()
+                : Collections.unmodifiableSet(new TreeSet<>(types));
+        return new LicenseFilter(text, statuses, copy, fromDay, toDay, sort, fuzzy);
+    }
+
+    // Inclusive expiry window in epoch days; EpochDay.NONE leaves that end open
+    public LicenseFilter withExpiryRange(int fromDay, int toDay) {
+        return new LicenseFilter(text, statuses, types, fromDay, toDay, sort, fuzzy);
+    }
+
+    public LicenseFilter withSort(Sort sort) {
+        return new LicenseFilter(text, statuses, types, fromDay, toDay, sort, fuzzy);
+    }
+
+    // Match the text against names with typos allowed, closest first, rather than as
+    // word prefixes in the sort order
+    public LicenseFilter withFuzzy(boolean fuzzy) {
+        return new LicenseFilter(text, statuses, types, fromDay, toDay, sort, fuzzy);
+    }
+
+    public String getText() { return text; }
+
+    public String[] getTerms() { return terms; }
+
+    public int getStatuses() { return statuses; }
+
+    public Set<String> getTypes() { return types; }
+
+    public int getFromDay() { return fromDay; }
+
+    public int getToDay() { return toDay; }
+
+    public Sort getSort() { return sort; }
+
+    public boolean isFuzzy() { return fuzzy; }
+
+    // True if the result is a ranked fuzzy name match rather than a sorted, paged query
+    public boolean isFuzzySearch() {
+        return fuzzy && terms.length > 0;
+    }
+
+    public boolean hasStatus(int status) {
+        return (statuses & (1 << status)) != 0;
+    }
+
+    // True if nothing is filtered out (the sort may still differ from the default)
+    public boolean isUnfiltered() {
+        return terms.length == 0 && statuses == ALL_STATUSES && types.isEmpty()
+                && fromDay == EpochDay.NONE && toDay == EpochDay.NONE;
+    }
+
+    // True if the filters other than the search text are the same, so a result can be
+    // narrowed in memory when only the text was refined
+    public boolean sameExceptText(LicenseFilter other) {
+        return statuses == other.statuses && types.equals(other.types)
+                && fromDay == other.fromDay && toDay == other.toDay && sort == other.sort
+                && fuzzy == other.fuzzy;
+    }
+
+    // In-memory equivalent of the query, for rows already loaded
+    public boolean matches(License license, int today) {
+        if (!hasStatus(license.getStatus(today))) return false;
+        if (!types.isEmpty() && !types.contains(license.getType())) return false;
+        int day = license.getExpiryDay();
+        if (fromDay != EpochDay.NONE && (day == EpochDay.NONE || day < fromDay)) return false;
+        if (toDay != EpochDay.NONE && (day == EpochDay.NONE || day > toDay)) return false;
+        return LicenseSearch.matches(license, terms);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LicenseFilter)) return false;
+        LicenseFilter other = (LicenseFilter) o;
+        return sameExceptText(other) && Arrays.equals(terms, other.terms);
+    }
+
+    @Override
+    public int hashCode() {
+        return ((Arrays.hashCode(terms) * 31 + statuses) * 31 + types.hashCode()) * 31
+                + ((fromDay * 31 + toDay) * 31 + sort.hashCode()) * 2 + (fuzzy ? 1 : 0);
+    }
+}
@@ -0,0 +1,229 @@
+package com.licensemanager;
+
+import android.os.CancellationSignal;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports licenses from a CSV file, such as a spreadsheet export or a file written by
+ * LicenseExporter. The header row names the columns (name, type, expiry_date and
+ * optionally description; others such as id are ignored).
+ *
+ * The file is read CHUNK_ROWS records at a time. Each chunk is validated on a small
+ * worker pool, checked for duplicates, and written in one transaction by
+ * DatabaseHelper.insertLicenses, so memory holds one chunk whatever the file size.
+ * A row is a duplicate if a license with the same name (ignoring ASCII case, like the
+ * name index) and type is already in the database or earlier in the file; earlier
+ * chunks are committed by then, so the indexed lookup covers them as well.
+ */
+public final class LicenseImporter {
+    public interface ProgressListener {
+        // Called on the importing thread after each chunk is written
+        void onProgress(int rowsRead);
+    }
+
+    // Rows per chunk; matches the bulk insert transaction size
+    static final int CHUNK_ROWS = 500;
+    private static final int MAX_VALIDATORS = 4;
+
+    private static final String[] NAME_HEADERS = {"name", "employee name", "employee"};
+    private static final String[] TYPE_HEADERS = {"type", "license type"};
+    private static final String[] EXPIRY_HEADERS = {"expiry_date", "expiry date", "expiry"};
+    private static final String[] DESCRIPTION_HEADERS = {"description", "notes"};
+
+    private final DatabaseHelper databaseHelper;
+
+    public LicenseImporter(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    /**
+     * Import every row of the CSV and return the per-row report. Chunks already written
+     * stay written if the signal is cancelled; the report is then marked cancelled.
+     * Throws IOException if the file can't be read or has no usable header.
+     */
+    public ImportReport importCsv(Reader in, CancellationSignal cancellationSignal,
+                                  ProgressListener progress) throws IOException {
+        CsvReader reader = new CsvReader(in);
+        ImportReport report = new ImportReport();
+
+        List<String> header = reader.readRecord();
+        if (header == null) return report;
+        Columns columns = new Columns(header);
+
+        int threads = Math.max(1, Math.min(MAX_VALIDATORS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService validators = Executors.newFixedThreadPool(threads);
+        try {
+            List<List<String>> records = new ArrayList<>(CHUNK_ROWS);
+            int[] lines = new int[CHUNK_ROWS];
+            while (true) {
+                if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+                    report.setCancelled();
+                    break;
+                }
+
+                records.clear();
+                List<String> record;
+                while (records.size() < CHUNK_ROWS && (record = reader.readRecord()) != null) {
+                    lines[records.size()] = reader.getRecordLine();
+                    records.add(record);
+                }
+                if (records.isEmpty()) break;
+
+                importChunk(records, lines, columns, validators, threads, report);
+                if (progress != null) progress.onProgress(report.getRowCount());
+            }
+        } finally {
+            validators.shutdownNow();
+        }
+        return report;
+    }
+
+    private void importChunk(List<List<String>> records, int[] lines, Columns columns,
+                             ExecutorService validators, int threads, ImportReport report) throws IOException {
+        int count = records.size();
+        License[] licenses = new License[count];
+        String[] rowErrors = new String[count];
+        boolean[] duplicates = new boolean[count];
+
+        // Validate slices of the chunk in parallel; each task writes only its own slots
+        List<Future<?>> tasks = new ArrayList<>(threads);
+        int sliceSize = (count + threads - 1) / threads;
+        for (int from = 0; from < count; from += sliceSize) {
+            final int start = from;
+            final int end = Math.min(count, from + sliceSize);
+            tasks.add(validators.submit((Callable<Void>) () -> {
+                for (int i = start; i < end; i++) {
+                    rowErrors[i] = validate(records.get(i), columns, licenses, i);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Validation failed", e.getCause());
+            }
+        }
+
+        // Duplicates, in file order: first within the chunk, then against the database
+        Map<String, Integer> chunkKeys = new HashMap<>();
+        List<License> accepted = new ArrayList<>(count);
+        int[] acceptedRows = new int[count];
+        for (int i = 0; i < count; i++) {
+            License license = licenses[i];
+            if (license == null) continue;
+
+            String key = duplicateKey(license);
+            Integer firstLine = chunkKeys.get(key);
+            if (firstLine != null) {
+                rowErrors[i] = "Duplicate of line " + firstLine;
+                duplicates[i] = true;
+            } else if (databaseHelper.licenseExists(license.getName(), license.getType())) {
+                rowErrors[i] = "Already in the roster";
+                duplicates[i] = true;
+            } else {
+                chunkKeys.put(key, lines[i]);
+                acceptedRows[accepted.size()] = i;
+                accepted.add(license);
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            BatchResult result = databaseHelper.insertLicenses(accepted);
+            for (int j = 0; j < result.size(); j++) {
+                if (!result.isSuccess(j)) rowErrors[acceptedRows[j]] = result.getError(j);
+            }
+            report.addImported(result.getSuccessCount());
+        }
+
+        report.addRows(count);
+        for (int i = 0; i < count; i++) {
+            if (duplicates[i]) {
+                report.addDuplicate(lines[i], rowErrors[i]);
+            } else if (rowErrors[i] != null) {
+                report.addError(lines[i], rowErrors[i]);
+            }
+        }
+    }
+
+    // Returns the error for an invalid row, or null after storing its License
+    private static String validate(List<String> record, Columns columns, License[] licenses, int index) {
+        String name = columns.get(record, columns.name);
+        String type = columns.get(record, columns.type);
+        String expiryDate = columns.get(record, columns.expiryDate);
+        String description = columns.get(record, columns.description);
+
+        // Same checks and messages as the add/edit form
+        if (name.isEmpty()) return "Employee name is required";
+        if (type.isEmpty()) return "License type is required";
+        if (expiryDate.isEmpty()) return "Expiry date is required";
+        // Strict yyyy-MM-dd, so a day that doesn't exist (2025-02-30) isn't rolled over
+        int expiryDay = EpochDay.parse(expiryDate);
+        if (expiryDay == EpochDay.NONE || !EpochDay.format(expiryDay).equals(expiryDate)) {
+            return "Expiry date must be a yyyy-MM-dd date, not \"" + expiryDate + "\"";
+        }
+
+        licenses[index] = new License(name, LicenseTypes.intern(type), expiryDate, description);
+        return null;
+    }
+
+    // SQLite's NOCASE only folds ASCII letters, so the in-file check does the same
+    private static String duplicateKey(License license) {
+        String name = license.getName();
+        StringBuilder key = new StringBuilder(name.length() + 1 + license.getType().length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            key.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return key.append('\u0000').append(license.getType()).toString();
+    }
+
+    // Positions of the known columns in the header; -1 if absent
+    private static final class Columns {
+        final int name;
+        final int type;
+        final int expiryDate;
+        final int description;
+
+        Columns(List<String> header) throws IOException {
+            name = find(header, NAME_HEADERS);
+            type = find(header, TYPE_HEADERS);
+            expiryDate = find(header, EXPIRY_HEADERS);
+            description = find(header, DESCRIPTION_HEADERS);
+            if (name < 0 || type < 0 || expiryDate < 0) {
+                throw new IOException("The first row must name the name, type and expiry_date columns");
+            }
+        }
+
+        // Trimmed value of the column, or "" if the row is too short or it's absent
+        String get(List<String> record, int column) {
+            return column >= 0 && column < record.size() ? record.get(column).trim() : "";
+        }
+
+        private static int find(List<String> header, String[] names) {
+            for (int i = 0; i < header.size(); i++) {
+                String column = header.get(i).trim().toLowerCase(Locale.ROOT);
+                for (String name : names) {
+                    if (column.equals(name)) return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.licensemanager;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Paged view of the licenses matching a LicenseFilter, in the filter's sort order.
+ *
+ * Pages are read on a background thread with keyset cursors, so each page costs one
+ * index range scan no matter how deep the user has scrolled. Only a fixed number of
+ * pages is kept in memory; positions outside them report null and are rendered as
+ * placeholders until their page is loaded again. A fuzzy name search is the
+ * exception: its result is the best matches only, which fit in one page. All public
+ * methods must be called on the main thread.
+ */
+public class LicensePagedList {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    public interface Callback {
+        // The list was reloaded from scratch (new query or data change)
+        void onReset();
+
+        // Rows [start, start + count) were loaded and can be rebound
+        void onRangeLoaded(int start, int count);
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final int maxLoadedPages;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Callback> callbacks = new ArrayList<>();
+
+    // Loaded pages by page index; evicted pages fall back to placeholders
+    private final SparseArray<List<License>> pages = new SparseArray<>();
+    // Last row of every page read so far; the keyset cursor for the following page
+    private final List<License> pageEndKeys = new ArrayList<>();
+    private final Set<Integer> loadingPages = new HashSet<>();
+
+    private LicenseFilter filter = LicenseFilter.ALL;
+    private int totalCount;
+    private int lastAccessedPosition;
+    // Bumped on every refresh so results of stale loads are dropped; read by the loader
+    // thread to skip refreshes that were superseded while queued
+    private volatile int generation;
+    // Filter of the result currently shown
+    private LicenseFilter shownFilter = LicenseFilter.ALL;
+    // While a refresh is pending the old pages stay visible but no new pages are read
+    private boolean refreshing;
+
+    public LicensePagedList(DatabaseHelper databaseHelper) {
+        this(databaseHelper, DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE, 8);
+    }
+
+    public LicensePagedList(DatabaseHelper databaseHelper, int pageSize, int prefetchDistance, int maxLoadedPages) {
+        this.databaseHelper = databaseHelper;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.maxLoadedPages = Math.max(maxLoadedPages, 2 + (2 * prefetchDistance) / pageSize);
+    }
+
+    public void addCallback(Callback callback) {
+        callbacks.add(callback);
+    }
+
+    public void removeCallback(Callback callback) {
+        callbacks.remove(callback);
+    }
+
+    public LicenseFilter getFilter() {
+        return filter;
+    }
+
+    // Total number of rows, including placeholders
+    public int size() {
+        return totalCount;
+    }
+
+    public boolean isEmpty() {
+        return totalCount == 0;
+    }
+
+    // True from a refresh() call until its result is shown
+    public boolean isRefreshing() {
+        return refreshing;
+    }
+
+    // Immutable copy of the current rows for the adapter; unloaded rows read as null
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Returns the license at the position, or null if its page is not in memory yet.
+     * Also schedules loading of the pages within the prefetch distance.
+     */
+    public License get(int position) {
+        lastAccessedPosition = position;
+        loadAround(position);
+
+        List<License> page = pages.get(position / pageSize);
+        if (page == null) {
+            return null;
+        }
+        int offset = position % pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Show rows saved from an earlier run (see StartupSnapshot) until the first refresh
+     * delivers the real result. Only valid before anything else was loaded.
+     */
+    public void showPlaceholderRows(List<License> rows) {
+        if (totalCount != 0 || rows.isEmpty()) return;
+
+        // Not recorded as shown terms or end keys: the refresh that follows always reads
+        // the database, and no page beyond these rows is loaded until it has
+        refreshing = true;
+        pages.put(0, rows.subList(0, Math.min(rows.size(), pageSize)));
+        totalCount = pages.get(0).size();
+
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onReset();
+        }
+    }
+
+    /**
+     * Drop every loaded page and reload the count and the first page for the filter.
+     * If only the search text changed, refining the one currently shown, and that whole
+     * result is in memory, the loaded rows are filtered instead of querying the
+     * database again. A refresh superseded by a newer one before it starts is skipped.
+     */
+    public void refresh(LicenseFilter newFilter) {
+        filter = newFilter;
+        final int loadGeneration = ++generation;
+        final LicenseFilter loadFilter = filter;
+        final String[] terms = filter.getTerms();
+        final String[] shownTerms = shownFilter.getTerms();
+
+        final List<License> narrowFrom = !filter.isFuzzySearch() && filter.sameExceptText(shownFilter)
+                && !Arrays.equals(terms, shownTerms)
+                && LicenseSearch.narrows(shownTerms, terms) ? fullyLoadedRows() : null;
+
+        refreshing = true;
+
+        executor.execute(() -> {
+            if (loadGeneration != generation) return;
+
+            List<License> rows;
+            int count;
+            if (narrowFrom != null) {
+                rows = new ArrayList<>();
+                for (License license : narrowFrom) {
+                    if (LicenseSearch.matches(license, terms)) rows.add(license);
+                }
+                count = rows.size();
+            } else if (loadFilter.isFuzzySearch()) {
+                // A ranked top-k list rather than a keyset-paged query; one page of it,
+                // which is always held in memory, so no further page is ever read
+                rows = databaseHelper.searchLicensesFuzzy(loadFilter, pageSize);
+                count = rows.size();
+            } else {
+                count = databaseHelper.getLicenseCount(loadFilter);
+                rows = databaseHelper.getLicensesPage(loadFilter, null, pageSize);
+            }
+
+            mainHandler.post(() -> {
+                if (loadGeneration != generation) return;
+
+                refreshing = false;
+                shownFilter = loadFilter;
+                pages.clear();
+                pageEndKeys.clear();
+                loadingPages.clear();
+                totalCount = count;
+                lastAccessedPosition = 0;
+                for (int start = 0, pageIndex = 0; start < rows.size(); start += pageSize, pageIndex++) {
+                    storePage(pageIndex, rows.subList(start, Math.min(start + pageSize, rows.size())));
+                }
+
+                for (Callback callback : new ArrayList<>(callbacks)) {
+                    callback.onReset();
+                }
+            });
+        });
+    }
+
+    // Every row of the current result if all of its pages are in memory, else null
+    private List<License> fullyLoadedRows() {
+        if (refreshing || totalCount > pageSize * maxLoadedPages) return null;
+
+        List<License> rows = new ArrayList<>(totalCount);
+        for (int pageIndex = 0; pageIndex * pageSize < totalCount; pageIndex++) {
+            List<License> page = pages.get(pageIndex);
+            if (page == null) return null;
+            rows.addAll(page);
+        }
+        return rows;
+    }
+
+    public void close() {
+        generation++;
+        callbacks.clear();
+        executor.shutdownNow();
+    }
+
+    private void loadAround(int position) {
+        if (refreshing || totalCount == 0) return;
+
+        int firstPage = Math.max(0, position - prefetchDistance) / pageSize;
+        int lastPage = Math.min(totalCount - 1, position + prefetchDistance) / pageSize;
+
+        for (int pageIndex = firstPage; pageIndex <= lastPage; pageIndex++) {
+            if (pages.get(pageIndex) == null) {
+                // A keyset cursor needs the end of the previous page, so pages beyond the
+                // furthest one read so far are reached by walking forward from it
+                loadPage(Math.min(pageIndex, pageEndKeys.size()));
+            }
+        }
+    }
+
+    private void loadPage(final int pageIndex) {
+        if (pages.get(pageIndex) != null || loadingPages.contains(pageIndex)) return;
+        loadingPages.add(pageIndex);
+
+        final int loadGeneration = generation;
+        final LicenseFilter loadFilter = filter;
+        final License after = pageIndex == 0 ? null : pageEndKeys.get(pageIndex - 1);
+
+        executor.execute(() -> {
+            List<License> page = databaseHelper.getLicensesPage(loadFilter, after, pageSize);
+
+            mainHandler.post(() -> {
+                if (loadGeneration != generation) return;
+
+                loadingPages.remove(pageIndex);
+                storePage(pageIndex, page);
+
+                int start = pageIndex * pageSize;
+                int count = Math.min(page.size(), totalCount - start);
+                if (count > 0) {
+                    for (Callback callback : new ArrayList<>(callbacks)) {
+                        callback.onRangeLoaded(start, count);
+                    }
+                }
+
+                // Continue walking towards the position the user is looking at
+                loadAround(lastAccessedPosition);
+            });
+        });
+    }
+
+    private void storePage(int pageIndex, List<License> page) {
+        pages.put(pageIndex, page);
+        if (!page.isEmpty() && pageIndex == pageEndKeys.size()) {
+            // Only the sort keys are needed, so don't pin the notes in memory
+            License last = page.get(page.size() - 1);
+            pageEndKeys.add(new License(last.getId(), last.getName(), last.getType(), last.getExpiryDate(), null));
+        }
+        trimPages();
+    }
+
+    // Keep memory bounded by evicting the pages furthest from the current position
+    private void trimPages() {
+        int currentPage = lastAccessedPosition / pageSize;
+        while (pages.size() > maxLoadedPages) {
+            int furthestIndex = 0;
+            int furthestDistance = -1;
+            for (int i = 0; i < pages.size(); i++) {
+                int distance = Math.abs(pages.keyAt(i) - currentPage);
+                if (distance > furthestDistance) {
+                    furthestDistance = distance;
+                    furthestIndex = i;
+                }
+            }
+            pages.remove(pages.keyAt(furthestIndex));
+        }
+    }
+
+    /**
+     * Point-in-time view of a paged list. Pages are immutable once loaded, so copying
+     * the page table is enough to make the snapshot independent of later loads.
+     */
+    public static class Snapshot extends AbstractList<License> {
+        private final SparseArray<List<License>> pages;
+        private final int pageSize;
+        private final int size;
+
+        private Snapshot(LicensePagedList list) {
+            pages = list.pages.clone();
+            pageSize = list.pageSize;
+            size = list.totalCount;
+        }
+
+        @Override
+        public License get(int position) {
+            List<License> page = pages.get(position / pageSize);
+            if (page == null) return null;
+            int offset = position % pageSize;
+            return offset < page.size() ? page.get(offset) : null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.licensemanager;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs DatabaseHelper calls on a small background pool and delivers results on the
+ * main thread. Screens observe the queries they show; every write invalidates only the
+ * queries whose results it can change, and their observers reload on the main thread.
+ */
+public class LicenseRepository {
+    private static final String TAG = "LicenseRepository";
+
+    // WAL lets reads run alongside a write, so two threads are enough for one screen
+    private static final int THREAD_COUNT = 2;
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+    // Characters buffered between the exporter and the document
+    private static final int EXPORT_BUFFER_CHARS = 64 * 1024;
+
+    // Queries a screen can observe
+    public enum Query {
+        // Rows of the license list and search results (any column)
+        LICENSES,
+        // Dashboard status totals (row count and expiry days only)
+        STATUS_COUNTS
+    }
+
+    public interface Callback<T> {
+        // Called on the main thread with the result
+        void onResult(T result);
+
+        // Called on the main thread if the operation threw
+        default void onError(Exception e) {
+            Log.e(TAG, "Database operation failed", e);
+        }
+    }
+
+    public interface Observer {
+        // Called on the main thread after a write changed the query's result
+        void onInvalidated();
+    }
+
+    private interface Task<T> {
+        T run() throws Exception;
+    }
+
+    private static LicenseRepository instance;
+
+    private final Context context;
+    private final DatabaseHelper databaseHelper;
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Query, List<Observer>> observers = new EnumMap<>(Query.class);
+
+    public static synchronized LicenseRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new LicenseRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LicenseRepository(Context context) {
+        this.context = context;
+        this.databaseHelper = DatabaseHelper.getInstance(context);
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "license-db-" + count.incrementAndGet());
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        // The repository lives as long as the process; let idle threads exit
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+
+        for (Query query : Query.values()) {
+            observers.put(query, new CopyOnWriteArrayList<>());
+        }
+    }
+
+    public DatabaseHelper getDatabaseHelper() {
+        return databaseHelper;
+    }
+
+    public void addObserver(Query query, Observer observer) {
+        observers.get(query).add(observer);
+    }
+
+    public void removeObserver(Query query, Observer observer) {
+        observers.get(query).remove(observer);
+    }
+
+    // Reads
+
+    public void getLicense(long id, Callback<License> callback) {
+        submit(() -> databaseHelper.getLicense(id), callback);
+    }
+
+    public void getStatusCounts(Callback<StatusCounts> callback) {
+        submit(() -> databaseHelper.getStatusCounts(EpochDay.today()), callback);
+    }
+
+    // Distinct license types in the database, for the type filter
+    public void getLicenseTypes(Callback<List<String>> callback) {
+        submit(databaseHelper::getLicenseTypes, callback);
+    }
+
+    // Stream the whole roster to a document picked through the storage access framework.
+    // Progress is delivered on the main thread. If the export fails or is cancelled
+    // through the signal, the partial document is deleted and the callback gets the error
+    // (OperationCanceledException for a cancel).
+    public void exportLicenses(Uri uri, LicenseExporter.Format format, CancellationSignal cancellationSignal,
+                               LicenseExporter.ProgressListener progress, Callback<Integer> callback) {
+        submit(() -> {
+            ContentResolver resolver = context.getContentResolver();
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    resolver.openOutputStream(uri, "wt"), StandardCharsets.UTF_8), EXPORT_BUFFER_CHARS)) {
+                return databaseHelper.exportLicenses(new LicenseExporter(out, format), cancellationSignal,
+                        (written, total) -> mainHandler.post(() -> progress.onProgress(written, total)));
+            } catch (IOException | RuntimeException e) {
+                deleteDocument(resolver, uri);
+                throw e;
+            }
+        }, callback);
+    }
+
+    // Write a binary backup of every license to a document picked through the storage
+    // access framework; a failed backup deletes the partial document
+    public void backupLicenses(Uri uri, Callback<Integer> callback) {
+        submit(() -> {
+            ContentResolver resolver = context.getContentResolver();
+            try (FileChannel out = new ParcelFileDescriptor.AutoCloseOutputStream(
+                    resolver.openFileDescriptor(uri, "wt")).getChannel()) {
+                return databaseHelper.backupLicenses(out);
+            } catch (IOException | RuntimeException e) {
+                deleteDocument(resolver, uri);
+                throw e;
+            }
+        }, callback);
+    }
+
+    // Make sure the expiry alarm for the next notification threshold is armed. Nothing
+    // on screen waits for this, so it runs at background priority.
+    public void scheduleNotifications() {
+        submit(() -> {
+            int tid = Process.myTid();
+            int priority = Process.getThreadPriority(tid);
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                NotificationScheduler.reconcile(context);
+            } finally {
+                Process.setThreadPriority(priority);
+            }
+            return null;
+        }, null);
+    }
+
+    // Keep what the dashboard shows for the next cold start (see StartupSnapshot)
+    public void saveStartupSnapshot(List<License> rows, StatusCounts counts) {
+        submit(() -> {
+            StartupSnapshot.save(context, rows, counts);
+            return null;
+        }, null);
+    }
+
+    // Writes
+
+    public void insertLicense(License license, Callback<Long> callback) {
+        submit(() -> {
+            long id = databaseHelper.insertLicense(license);
+            if (id != -1) {
+                invalidate(Query.LICENSES, Query.STATUS_COUNTS);
+                NotificationScheduler.onLicenseChanged(context, EpochDay.NONE, license.getExpiryDay());
+            }
+            return id;
+        }, callback);
+    }
+
+    public void updateLicense(License license, Callback<Integer> callback) {
+        submit(() -> {
+            // Counts only move when the expiry day does; the row lookup is by primary key
+            License old = databaseHelper.getLicense(license.getId());
+            int rows = databaseHelper.updateLicense(license);
+            if (rows > 0) {
+                if (old == null || old.getExpiryDay() != license.getExpiryDay()) {
+                    invalidate(Query.LICENSES, Query.STATUS_COUNTS);
+                    NotificationScheduler.onLicenseChanged(context,
+                            old != null ? old.getExpiryDay() : EpochDay.NONE, license.getExpiryDay());
+                } else {
+                    invalidate(Query.LICENSES);
+                }
+            }
+            return rows;
+        }, callback);
+    }
+
+    public void deleteLicense(long id, Callback<Void> callback) {
+        submit(() -> {
+            License old = databaseHelper.getLicense(id);
+            databaseHelper.deleteLicense(id);
+            invalidate(Query.LICENSES, Query.STATUS_COUNTS);
+            if (old != null) {
+                NotificationScheduler.onLicenseDeleted(context, id, old.getExpiryDay());
+            }
+            return null;
+        }, callback);
+    }
+
+    public void insertLicenses(Iterable<License> licenses, Callback<BatchResult> callback) {
+        submit(() -> {
+            BatchResult result = databaseHelper.insertLicenses(licenses);
+            if (result.getSuccessCount() > 0) {
+                invalidate(Query.LICENSES, Query.STATUS_COUNTS);
+                NotificationScheduler.scheduleNextAlarm(context);
+            }
+            return result;
+        }, callback);
+    }
+
+    // Replace every license with the contents of a backup document. Nothing changes
+    // unless the whole file reads back with a valid checksum.
+    public void restoreLicenses(Uri uri, Callback<Integer> callback) {
+        submit(() -> {
+            int restored;
+            try (FileChannel in = new ParcelFileDescriptor.AutoCloseInputStream(
+                    context.getContentResolver().openFileDescriptor(uri, "r")).getChannel()) {
+                restored = databaseHelper.restoreLicenses(new LicenseBackup.Reader(in));
+            }
+            invalidate(Query.LICENSES, Query.STATUS_COUNTS);
+            NotificationScheduler.scheduleNextAlarm(context);
+            return restored;
+        }, callback);
+    }
+
+    // Import a CSV document picked through the storage access framework (see
+    // LicenseImporter). Progress is delivered on the main thread; rows imported before a
+    // cancel are kept and the report says it was cancelled.
+    public void importLicenses(Uri uri, CancellationSignal cancellationSignal,
+                               LicenseImporter.ProgressListener progress, Callback<ImportReport> callback) {
+        submit(() -> {
+            ImportReport report = null;
+            try (Reader in = new InputStreamReader(
+                    context.getContentResolver().openInputStream(uri), StandardCharsets.UTF_8)) {
+                report = new LicenseImporter(databaseHelper).importCsv(in, cancellationSignal,
+                        rowsRead -> mainHandler.post(() -> progress.onProgress(rowsRead)));
+                return report;
+            } finally {
+                // A file that fails part way through may already have committed chunks
+                if (report == null || report.getImportedCount() > 0) {
+                    invalidate(Query.LICENSES, Query.STATUS_COUNTS);
+                    NotificationScheduler.scheduleNextAlarm(context);
+                }
+            }
+        }, callback);
+    }
+
+    public void updateLicenses(Iterable<License> licenses, Callback<BatchResult> callback) {
+        submit(() -> {
+            BatchResult result = databaseHelper.updateLicenses(licenses);
+            if (result.getSuccessCount() > 0) {
+                invalidate(Query.LICENSES, Query.STATUS_COUNTS);
+                NotificationScheduler.scheduleNextAlarm(context);
+            }
+            return result;
+        }, callback);
+    }
+
+    private <T> void submit(Task<T> task, Callback<T> callback) {
+        executor.execute(() -> {
+            T result;
+            try {
+                result = task.run();
+            } catch (Exception e) {
+                // Fire-and-forget work (alarms, the startup snapshot) still leaves a trace
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onError(e));
+                } else {
+                    Log.e(TAG, "Database operation failed", e);
+                }
+                return;
+            }
+            if (callback != null) mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    // Remove a document left incomplete by a failed export or backup
+    private static void deleteDocument(ContentResolver resolver, Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(resolver, uri);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not delete incomplete document " + uri, e);
+        }
+    }
+
+    // Posted before the write's callback, so observers reload before the caller reacts
+    private void invalidate(Query... queries) {
+        mainHandler.post(() -> {
+            for (Query query : queries) {
+                for (Observer observer : observers.get(query)) {
+                    observer.onInvalidated();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package com.licensemanager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Search terms as the full-text index sees them: the query is split into words of
+ * letters and digits, folded the way the index's unicode61 tokenizer folds them
+ * (case, and the accents of Latin letters, so "Emile" and "\u00c9mile" are the same
+ * word), and every word matches as a prefix of a word in the name, type or notes.
+ * The same rules are used to build FTS queries and to narrow an already loaded
+ * result set in memory, so both give the same rows.
+ */
+public final class LicenseSearch {
+    private static final String[] NO_TERMS = new String[0];
+
+    // Folded form of every character up to the end of Latin Extended-B, the range in
+    // which unicode61 removes diacritics; other characters only have their case folded
+    private static final char[] LATIN_FOLDS = latinFolds();
+
+    private LicenseSearch() {}
+
+    public static String[] terms(String query) {
+        if (query == null) return NO_TERMS;
+
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            if (i < query.length() && !isSeparator(query.charAt(i))) {
+                word.append(fold(query.charAt(i)));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words.isEmpty() ? NO_TERMS : words.toArray(new String[0]);
+    }
+
+    // unicode61 splits on everything but letters, digits and combining marks
+    private static boolean isSeparator(char c) {
+        if (c < 128) return !Character.isLetterOrDigit(c);
+        if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) return false;
+        int type = Character.getType(c);
+        return type != Character.NON_SPACING_MARK && type != Character.COMBINING_SPACING_MARK
+                && type != Character.ENCLOSING_MARK;
+    }
+
+    // Lower case without diacritics, as unicode61 stores the character in the index
+    private static char fold(char c) {
+        if (c < LATIN_FOLDS.length) return LATIN_FOLDS[c];
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static char[] latinFolds() {
+        char[] folds = new char[0x250];
+        for (char c = 0; c < folds.length; c++) {
+            // The first character of the canonical decomposition is the base letter
+            char base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+            folds[c] = Character.toLowerCase(Character.toUpperCase(base));
+        }
+        return folds;
+    }
+
+    // FTS prefix query for the terms ("jo* sm*"), or null if there are none
+    public static String toFtsQuery(String[] terms) {
+        if (terms.length == 0) return null;
+
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) match.append(' ');
+            match.append(term).append('*');
+        }
+        return match.toString();
+    }
+
+    // True if every row matching newTerms also matches oldTerms, i.e. the new query
+    // only refines the old one ("jo" -> "joh", "jo" -> "jo sm")
+    public static boolean narrows(String[] oldTerms, String[] newTerms) {
+        if (oldTerms.length == 0) return newTerms.length > 0;
+
+        for (String oldTerm : oldTerms) {
+            boolean covered = false;
+            for (String newTerm : newTerms) {
+                if (newTerm.startsWith(oldTerm)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) return false;
+        }
+        return true;
+    }
+
+    public static boolean matches(License license, String[] terms) {
+        for (String term : terms) {
+            if (!containsWordWithPrefix(license.getName(), term)
+                    && !containsWordWithPrefix(license.getType(), term)
+                    && !containsWordWithPrefix(license.getDescription(), term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Compares text from the offset, folded, with a folded prefix
+    private static boolean regionMatchesFolded(String text, int offset, String prefix) {
+        for (int j = 0; j < prefix.length(); j++) {
+            if (fold(text.charAt(offset + j)) != prefix.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    // Allocation-free check for a word in text starting with the folded prefix
+    static boolean containsWordWithPrefix(String text, String prefix) {
+        if (text == null) return false;
+
+        int length = text.length();
+        int prefixLength = prefix.length();
+        boolean atWordStart = true;
+        for (int i = 0; i < length; i++) {
+            if (isSeparator(text.charAt(i))) {
+                atWordStart = true;
+                continue;
+            }
+            if (atWordStart && i + prefixLength <= length && regionMatchesFolded(text, i, prefix)) {
+                return true;
+            }
+            atWordStart = false;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package com.licensemanager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide dictionary of license types. A roster uses a handful of types (the
+ * R.array.license_types entries plus any typed in), so every row read from the
+ * database shares one String per type instead of holding its own copy.
+ */
+public final class LicenseTypes {
+    private static final Map<String, String> types = new HashMap<>();
+
+    private LicenseTypes() {}
+
+    // The shared instance equal to the type, or null for a null type
+    public static synchronized String intern(String type) {
+        if (type == null) return null;
+
+        String shared = types.get(type);
+        if (shared == null) {
+            types.put(type, type);
+            shared = type;
+        }
+        return shared;
+    }
+}
@@ -1,51 +1,127 @@
 package com.licensemanager;
 
+import android.app.DatePickerDialog;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.View;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.chip.Chip;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
-    private DatabaseHelper databaseHelper;
+    // Wait for a pause in typing before searching
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    // Alarm reconciliation waits for the dashboard to be fully drawn, or at most this long
+    private static final long DEFERRED_WORK_TIMEOUT_MS = 5000;
+    // Rejected rows listed in the import report before "...and N more"
+    private static final int MAX_IMPORT_ERRORS_SHOWN = 50;
+    private static final String BACKUP_MIME_TYPE = "application/octet-stream";
+
+    private LicenseRepository repository;
     private RecyclerView licenseRecyclerView;
     private LicenseAdapter licenseAdapter;
-    private List<License> allLicenses;
-    private List<License> filteredLicenses;
+    private LicensePagedList licenses;
+    private ExpiryTimeline timeline;
+    private TimelineAdapter timelineAdapter;
+    // Bucket size of the timeline view, or null while the plain list is shown
+    private ExpiryTimeline.Granularity timelineGranularity;
     
     private TextView totalCount, activeCount, expiringCount, expiredCount;
     private TextInputEditText searchEditText;
+    private Chip chipActive, chipExpiring, chipExpired, chipType, chipExpiryRange, chipSort, chipFuzzy, chipView;
     private View emptyState;
 
+    // The storage access framework creates the export document; one launcher per format
+    // because the MIME type is fixed when the contract is built
+    private final ActivityResultLauncher<String> exportCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(LicenseExporter.Format.CSV.mimeType),
+            uri -> exportLicenses(uri, LicenseExporter.Format.CSV));
+    private final ActivityResultLauncher<String> exportJsonLinesLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(LicenseExporter.Format.JSON_LINES.mimeType),
+            uri -> exportLicenses(uri, LicenseExporter.Format.JSON_LINES));
+    private final ActivityResultLauncher<String[]> importCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::importLicenses);
+    private final ActivityResultLauncher<String> backupLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(BACKUP_MIME_TYPE), this::backupLicenses);
+    private final ActivityResultLauncher<String[]> restoreLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::confirmRestore);
+    // Cancels the running export or import, if any
+    private CancellationSignal exportSignal;
+    private CancellationSignal importSignal;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = () -> filterLicenses(
+            licenses.getFilter().withText(searchEditText.getText().toString().trim()));
+    private final Runnable deferredWork = this::startDeferredWork;
+
+    // Writes from any screen reload only what they changed, so nothing reloads on resume
+    private final LicenseRepository.Observer licensesObserver = () -> filterLicenses(licenses.getFilter());
+    private final LicenseRepository.Observer statusCountsObserver = this::updateStatistics;
+    // Counts requests may finish out of order on the pool; only the newest is shown
+    private int statisticsGeneration;
+
+    // Cold start: the first frame is drawn from the startup snapshot, then the real list
+    // and counts replace it; reportFullyDrawn() marks the point where both have arrived
+    private boolean listLoaded;
+    private StatusCounts loadedCounts;
+    private boolean fullyDrawn;
+    private boolean deferredWorkStarted;
+    // First rows of the unfiltered list, saved with the counts for the next cold start
+    private List<License> snapshotRows;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         initializeViews();
+        setupToolbar();
         setupDatabase();
         setupRecyclerView();
+        showStartupSnapshot();
         setupSearchFunctionality();
+        setupFilterChips();
         setupFAB();
         loadLicenses();
-        scheduleNotifications();
+        mainHandler.postDelayed(deferredWork, DEFERRED_WORK_TIMEOUT_MS);
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        loadLicenses(); // Refresh data when returning from add/edit screen
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.removeObserver(LicenseRepository.Query.LICENSES, licensesObserver);
+        repository.removeObserver(LicenseRepository.Query.STATUS_COUNTS, statusCountsObserver);
+        mainHandler.removeCallbacks(searchRunnable);
+        mainHandler.removeCallbacks(deferredWork);
+        // A rotation leaves the export running; leaving the screen for good stops it
+        if (exportSignal != null && isFinishing()) exportSignal.cancel();
+        if (importSignal != null && isFinishing()) importSignal.cancel();
+        licenses.close();
+        timeline.close();
     }
 
     private void initializeViews() {
@@ -54,18 +130,82 @@ public class MainActivity extends AppCompatActivity {
         expiringCount = findViewById(R.id.expiringCount);
         expiredCount = findViewById(R.id.expiredCount);
         searchEditText = findViewById(R.id.searchEditText);
+        chipActive = findViewById(R.id.chipActive);
+        chipExpiring = findViewById(R.id.chipExpiring);
+        chipExpired = findViewById(R.id.chipExpired);
+        chipType = findViewById(R.id.chipType);
+        chipExpiryRange = findViewById(R.id.chipExpiryRange);
+        chipSort = findViewById(R.id.chipSort);
+        chipFuzzy = findViewById(R.id.chipFuzzy);
+        chipView = findViewById(R.id.chipView);
         emptyState = findViewById(R.id.emptyState);
         licenseRecyclerView = findViewById(R.id.licenseRecyclerView);
     }
 
+    private void setupToolbar() {
+        MaterialToolbar toolbar = findViewById(R.id.toolbar);
+        toolbar.inflateMenu(R.menu.menu_main);
+        toolbar.setOnMenuItemClickListener(item -> {
+            int id = item.getItemId();
+            if (id == R.id.action_import_csv) {
+                // Spreadsheet apps label CSV files inconsistently
+                importCsvLauncher.launch(new String[]{"text/csv", "text/comma-separated-values", "text/plain"});
+                return true;
+            } else if (id == R.id.action_export_csv) {
+                exportCsvLauncher.launch(exportFileName(LicenseExporter.Format.CSV));
+                return true;
+            } else if (id == R.id.action_export_jsonl) {
+                exportJsonLinesLauncher.launch(exportFileName(LicenseExporter.Format.JSON_LINES));
+                return true;
+            } else if (id == R.id.action_backup) {
+                backupLauncher.launch("licenses-" + EpochDay.format(EpochDay.today()) + ".lmbk");
+                return true;
+            } else if (id == R.id.action_restore) {
+                restoreLauncher.launch(new String[]{BACKUP_MIME_TYPE});
+                return true;
+            }
+            return false;
+        });
+    }
+
     private void setupDatabase() {
-        databaseHelper = new DatabaseHelper(this);
+        repository = LicenseRepository.getInstance(this);
+        repository.addObserver(LicenseRepository.Query.LICENSES, licensesObserver);
+        repository.addObserver(LicenseRepository.Query.STATUS_COUNTS, statusCountsObserver);
     }
 
     private void setupRecyclerView() {
-        allLicenses = new ArrayList<>();
-        filteredLicenses = new ArrayList<>();
-        licenseAdapter = new LicenseAdapter(this, filteredLicenses);
+        licenses = new LicensePagedList(repository.getDatabaseHelper());
+        licenseAdapter = new LicenseAdapter(this, licenses);
+        licenses.addCallback(new LicensePagedList.Callback() {
+            @Override
+            public void onReset() {
+                updateEmptyState();
+                if (!licenses.isRefreshing()) onLicensesLoaded();
+            }
+
+            @Override
+            public void onRangeLoaded(int start, int count) {}
+        });
+
+        // The timeline only loads while it is shown; see showTimeline()
+        timeline = new ExpiryTimeline(repository.getDatabaseHelper());
+        timelineAdapter = new TimelineAdapter(this, timeline);
+        timeline.addCallback(new ExpiryTimeline.Callback() {
+            @Override
+            public void onReset() {
+                updateEmptyState();
+            }
+
+            @Override
+            public void onItemRangeInserted(int start, int count) {}
+
+            @Override
+            public void onItemRangeRemoved(int start, int count) {}
+
+            @Override
+            public void onItemChanged(int position) {}
+        });
         
         licenseRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         licenseRecyclerView.setAdapter(licenseAdapter);
@@ -78,7 +218,8 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                filterLicenses(s.toString().trim());
+                mainHandler.removeCallbacks(searchRunnable);
+                mainHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
             }
 
             @Override
@@ -86,6 +227,344 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    // Every chip only changes the LicenseFilter; the list asks the database for the
+    // matching page in the chosen order, so filtering never loads hidden rows
+    private void setupFilterChips() {
+        chipActive.setOnCheckedChangeListener((chip, checked) -> applyStatusChips());
+        chipExpiring.setOnCheckedChangeListener((chip, checked) -> applyStatusChips());
+        chipExpired.setOnCheckedChangeListener((chip, checked) -> applyStatusChips());
+
+        chipType.setOnClickListener(v -> repository.getLicenseTypes(this::showTypeDialog));
+
+        chipExpiryRange.setOnClickListener(v -> pickExpiryFrom());
+        chipExpiryRange.setOnCloseIconClickListener(v -> {
+            filterLicenses(licenses.getFilter().withExpiryRange(EpochDay.NONE, EpochDay.NONE));
+            updateExpiryChip();
+        });
+
+        chipSort.setOnClickListener(v -> {
+            LicenseFilter.Sort[] sorts = LicenseFilter.Sort.values();
+            LicenseFilter.Sort next = sorts[(licenses.getFilter().getSort().ordinal() + 1) % sorts.length];
+            filterLicenses(licenses.getFilter().withSort(next));
+            updateSortChip();
+        });
+
+        // Typo-tolerant name search; the search box text is then ranked by similarity
+        chipFuzzy.setOnCheckedChangeListener((chip, checked) -> {
+            filterLicenses(licenses.getFilter().withFuzzy(checked));
+            // Fuzzy results are ranked by closeness, so the sort order doesn't apply
+            chipSort.setEnabled(!checked);
+        });
+
+        // List, then week and month timelines
+        chipView.setOnClickListener(v -> {
+            if (timelineGranularity == null) {
+                showTimeline(ExpiryTimeline.Granularity.WEEK);
+            } else if (timelineGranularity == ExpiryTimeline.Granularity.WEEK) {
+                showTimeline(ExpiryTimeline.Granularity.MONTH);
+            } else {
+                showTimeline(null);
+            }
+        });
+    }
+
+    // Switch between the list (null) and the timeline with the given bucket size. The
+    // list keeps following the filter in timeline mode, so switching back is immediate.
+    private void showTimeline(ExpiryTimeline.Granularity granularity) {
+        boolean wasTimeline = timelineGranularity != null;
+        timelineGranularity = granularity;
+        if (granularity == null) {
+            licenseRecyclerView.removeItemDecoration(timelineAdapter.getStickyHeaders());
+            licenseRecyclerView.setAdapter(licenseAdapter);
+            chipView.setText(R.string.view_list);
+            updateEmptyState();
+        } else {
+            if (!wasTimeline) {
+                licenseRecyclerView.setAdapter(timelineAdapter);
+                licenseRecyclerView.addItemDecoration(timelineAdapter.getStickyHeaders());
+            }
+            chipView.setText(granularity == ExpiryTimeline.Granularity.WEEK
+                    ? R.string.view_weeks : R.string.view_months);
+            // The empty state is updated once the buckets arrive
+            timeline.refresh(licenses.getFilter(), granularity);
+        }
+
+        // The timeline is always in expiry order and matches names exactly
+        chipSort.setEnabled(granularity == null && !chipFuzzy.isChecked());
+        chipFuzzy.setEnabled(granularity == null);
+    }
+
+    private void applyStatusChips() {
+        int statuses = 0;
+        if (chipActive.isChecked()) statuses |= LicenseFilter.STATUS_ACTIVE;
+        if (chipExpiring.isChecked()) statuses |= LicenseFilter.STATUS_EXPIRING_SOON;
+        if (chipExpired.isChecked()) statuses |= LicenseFilter.STATUS_EXPIRED;
+        // No status chip checked means no status filter
+        filterLicenses(licenses.getFilter().withStatuses(statuses));
+    }
+
+    private void showTypeDialog(List<String> types) {
+        if (isDestroyed()) return;
+
+        final String[] items = types.toArray(new String[0]);
+        final boolean[] checked = new boolean[items.length];
+        Set<String> selected = licenses.getFilter().getTypes();
+        for (int i = 0; i < items.length; i++) {
+            checked[i] = selected.contains(items[i]);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.filter_type_title)
+                .setMultiChoiceItems(items, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                    Set<String> chosen = new HashSet<>();
+                    for (int i = 0; i < items.length; i++) {
+                        if (checked[i]) chosen.add(items[i]);
+                    }
+                    filterLicenses(licenses.getFilter().withTypes(chosen));
+                    updateTypeChip();
+                })
+                .setNegativeButton(R.string.filter_clear, (dialog, which) -> {
+                    filterLicenses(licenses.getFilter().withTypes(new HashSet<String>()));
+                    updateTypeChip();
+                })
+                .show();
+    }
+
+    // The window is picked as two dates: the start, then the end. Dismissing the
+    // second picker leaves the window open-ended.
+    private void pickExpiryFrom() {
+        showExpiryPicker(licenses.getFilter().getFromDay(), fromDay -> {
+            filterLicenses(licenses.getFilter().withExpiryRange(fromDay, licenses.getFilter().getToDay()));
+            updateExpiryChip();
+            showExpiryPicker(licenses.getFilter().getToDay(), toDay -> {
+                int from = licenses.getFilter().getFromDay();
+                filterLicenses(licenses.getFilter().withExpiryRange(Math.min(from, toDay), Math.max(from, toDay)));
+                updateExpiryChip();
+            });
+        });
+    }
+
+    private interface DayPicked {
+        void onDayPicked(int epochDay);
+    }
+
+    private void showExpiryPicker(int initialDay, DayPicked listener) {
+        Calendar calendar = Calendar.getInstance();
+        if (initialDay != EpochDay.NONE) {
+            calendar.setTimeInMillis(EpochDay.toMillis(initialDay, 0));
+        }
+        new DatePickerDialog(
+                this,
+                (view, year, month, dayOfMonth) -> listener.onDayPicked(EpochDay.of(year, month + 1, dayOfMonth)),
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH),
+                calendar.get(Calendar.DAY_OF_MONTH)
+        ).show();
+    }
+
+    private void updateTypeChip() {
+        Set<String> types = licenses.getFilter().getTypes();
+        if (types.isEmpty()) {
+            chipType.setText(R.string.filter_type_any);
+        } else if (types.size() == 1) {
+            chipType.setText(getString(R.string.filter_type_one, types.iterator().next()));
+        } else {
+            chipType.setText(getString(R.string.filter_type_many, types.size()));
+        }
+    }
+
+    private void updateExpiryChip() {
+        int from = licenses.getFilter().getFromDay();
+        int to = licenses.getFilter().getToDay();
+        if (from == EpochDay.NONE && to == EpochDay.NONE) {
+            chipExpiryRange.setText(R.string.filter_expiry_any);
+        } else if (to == EpochDay.NONE) {
+            chipExpiryRange.setText(getString(R.string.filter_expiry_from, EpochDay.format(from)));
+        } else if (from == EpochDay.NONE) {
+            chipExpiryRange.setText(getString(R.string.filter_expiry_to, EpochDay.format(to)));
+        } else {
+            chipExpiryRange.setText(getString(R.string.filter_expiry_between,
+                    EpochDay.format(from), EpochDay.format(to)));
+        }
+        chipExpiryRange.setCloseIconVisible(from != EpochDay.NONE || to != EpochDay.NONE);
+    }
+
+    private void updateSortChip() {
+        switch (licenses.getFilter().getSort()) {
+            case NAME:
+                chipSort.setText(R.string.sort_by_name);
+                break;
+            case TYPE:
+                chipSort.setText(R.string.sort_by_type);
+                break;
+            default:
+                chipSort.setText(R.string.sort_by_expiry);
+                break;
+        }
+    }
+
+    private static String exportFileName(LicenseExporter.Format format) {
+        return "licenses-" + EpochDay.format(EpochDay.today()) + "." + format.extension;
+    }
+
+    // Stream the roster into the picked document with a cancellable progress dialog
+    private void exportLicenses(Uri uri, LicenseExporter.Format format) {
+        // Null if the picker was dismissed
+        if (uri == null || exportSignal != null) return;
+
+        final CancellationSignal signal = new CancellationSignal();
+        exportSignal = signal;
+        final AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.export_title)
+                .setMessage(getString(R.string.export_progress, 0, loadedCounts != null ? loadedCounts.total : 0))
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel, (d, which) -> signal.cancel())
+                .show();
+
+        repository.exportLicenses(uri, format, signal,
+                (written, total) -> {
+                    if (!isDestroyed()) dialog.setMessage(getString(R.string.export_progress, written, total));
+                },
+                new LicenseRepository.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer written) {
+                        exportSignal = null;
+                        if (isDestroyed()) return;
+                        dialog.dismiss();
+                        Toast.makeText(MainActivity.this, getString(R.string.export_done, written),
+                                Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        exportSignal = null;
+                        if (isDestroyed()) return;
+                        dialog.dismiss();
+                        if (e instanceof OperationCanceledException) {
+                            Toast.makeText(MainActivity.this, R.string.export_cancelled, Toast.LENGTH_SHORT).show();
+                        } else {
+                            LicenseRepository.Callback.super.onError(e);
+                            Toast.makeText(MainActivity.this, getString(R.string.export_failed, e.getMessage()),
+                                    Toast.LENGTH_LONG).show();
+                        }
+                    }
+                });
+    }
+
+    // Import a picked CSV file with a cancellable progress dialog, then show the report
+    private void importLicenses(Uri uri) {
+        // Null if the picker was dismissed
+        if (uri == null || importSignal != null) return;
+
+        final CancellationSignal signal = new CancellationSignal();
+        importSignal = signal;
+        final AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.import_title)
+                .setMessage(getString(R.string.import_progress, 0))
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel, (d, which) -> signal.cancel())
+                .show();
+
+        repository.importLicenses(uri, signal,
+                rowsRead -> {
+                    if (!isDestroyed()) dialog.setMessage(getString(R.string.import_progress, rowsRead));
+                },
+                new LicenseRepository.Callback<ImportReport>() {
+                    @Override
+                    public void onResult(ImportReport report) {
+                        importSignal = null;
+                        if (isDestroyed()) return;
+                        dialog.dismiss();
+                        showImportReport(report);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        importSignal = null;
+                        LicenseRepository.Callback.super.onError(e);
+                        if (isDestroyed()) return;
+                        dialog.dismiss();
+                        Toast.makeText(MainActivity.this, getString(R.string.import_failed, e.getMessage()),
+                                Toast.LENGTH_LONG).show();
+                    }
+                });
+    }
+
+    private void showImportReport(ImportReport report) {
+        StringBuilder message = new StringBuilder(report.isCancelled()
+                ? getString(R.string.import_cancelled_summary, report.getRowCount(), report.getImportedCount())
+                : getString(R.string.import_summary, report.getImportedCount(), report.getRowCount(),
+                        report.getDuplicateCount(), report.getErrorCount() - report.getDuplicateCount()));
+
+        int shown = Math.min(report.getReportedErrorCount(), MAX_IMPORT_ERRORS_SHOWN);
+        if (shown > 0) message.append("\n");
+        for (int i = 0; i < shown; i++) {
+            message.append("\n").append(getString(R.string.import_error_line,
+                    report.getErrorLine(i), report.getError(i)));
+        }
+        if (report.getErrorCount() > shown) {
+            message.append("\n").append(getString(R.string.import_more_errors, report.getErrorCount() - shown));
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.import_title)
+                .setMessage(message)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    private void backupLicenses(Uri uri) {
+        // Null if the picker was dismissed
+        if (uri == null) return;
+
+        repository.backupLicenses(uri, new LicenseRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer written) {
+                if (isDestroyed()) return;
+                Toast.makeText(MainActivity.this, getString(R.string.backup_done, written), Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                LicenseRepository.Callback.super.onError(e);
+                if (isDestroyed()) return;
+                Toast.makeText(MainActivity.this, getString(R.string.backup_failed, e.getMessage()),
+                        Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    // Restoring replaces the whole roster, so ask first
+    private void confirmRestore(Uri uri) {
+        if (uri == null) return;
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.restore_confirm_title)
+                .setMessage(getString(R.string.restore_confirm_message))
+                .setPositiveButton(R.string.restore, (dialog, which) -> restoreLicenses(uri))
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void restoreLicenses(Uri uri) {
+        repository.restoreLicenses(uri, new LicenseRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer restored) {
+                if (isDestroyed()) return;
+                Toast.makeText(MainActivity.this, getString(R.string.restore_done, restored), Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                LicenseRepository.Callback.super.onError(e);
+                if (isDestroyed()) return;
+                Toast.makeText(MainActivity.this, getString(R.string.restore_failed, e.getMessage()),
+                        Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
     private void setupFAB() {
         FloatingActionButton fabAddLicense = findViewById(R.id.fabAddLicense);
         fabAddLicense.setOnClickListener(v -> {
@@ -95,54 +574,92 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void loadLicenses() {
-        allLicenses = databaseHelper.getAllLicenses();
-        filterLicenses(searchEditText.getText().toString().trim());
+        filterLicenses(LicenseFilter.ALL.withText(searchEditText.getText().toString().trim()));
         updateStatistics();
-        updateEmptyState();
     }
 
-    private void filterLicenses(String query) {
-        filteredLicenses.clear();
-        
-        if (query.isEmpty()) {
-            filteredLicenses.addAll(allLicenses);
-        } else {
-            for (License license : allLicenses) {
-                if (license.getName().toLowerCase().contains(query.toLowerCase()) ||
-                    license.getType().toLowerCase().contains(query.toLowerCase())) {
-                    filteredLicenses.add(license);
-                }
-            }
+    // Draw the first frame from the dashboard saved by the last run while the database
+    // loads. Placeholder rows report the list as still refreshing, so they are never
+    // mistaken for loaded data.
+    private void showStartupSnapshot() {
+        StartupSnapshot snapshot = StartupSnapshot.read(this);
+        if (snapshot == null) return;
+
+        licenses.showPlaceholderRows(snapshot.rows);
+        if (snapshot.counts != null) {
+            showStatistics(snapshot.counts);
         }
-        
-        licenseAdapter.updateLicenses(filteredLicenses);
-        updateEmptyState();
+    }
+
+    private void filterLicenses(LicenseFilter filter) {
+        mainHandler.removeCallbacks(searchRunnable);
+        // The paged list reloads (or narrows) in the background and notifies the adapter
+        licenses.refresh(filter);
+        if (timelineGranularity != null) timeline.refresh(filter, timelineGranularity);
     }
 
     private void updateStatistics() {
-        int total = allLicenses.size();
-        int active = 0;
-        int expiring = 0;
-        int expired = 0;
-
-        for (License license : allLicenses) {
-            if (license.isExpired()) {
-                expired++;
-            } else if (license.isExpiringSoon()) {
-                expiring++;
-            } else {
-                active++;
+        // Counted by SQL over the expiry index; no rows are loaded
+        final int generation = ++statisticsGeneration;
+        repository.getStatusCounts(counts -> {
+            if (generation != statisticsGeneration || isDestroyed()) return;
+
+            showStatistics(counts);
+            loadedCounts = counts;
+            onDashboardLoaded();
+        });
+    }
+
+    private void showStatistics(StatusCounts counts) {
+        totalCount.setText(String.valueOf(counts.total));
+        activeCount.setText(String.valueOf(counts.active));
+        expiringCount.setText(String.valueOf(counts.expiringSoon));
+        expiredCount.setText(String.valueOf(counts.expired));
+    }
+
+    private void onLicensesLoaded() {
+        listLoaded = true;
+        // Cold start always shows the default list, so only that one is worth saving
+        if (licenses.getFilter().equals(LicenseFilter.ALL)) {
+            List<License> rows = new ArrayList<>(StartupSnapshot.MAX_ROWS);
+            LicensePagedList.Snapshot shown = licenses.snapshot();
+            for (int i = 0; i < shown.size() && rows.size() < StartupSnapshot.MAX_ROWS; i++) {
+                if (shown.get(i) != null) rows.add(shown.get(i));
             }
+            snapshotRows = rows;
+        }
+        onDashboardLoaded();
+    }
+
+    // Called whenever the real list or counts arrive
+    private void onDashboardLoaded() {
+        if (snapshotRows != null && loadedCounts != null) {
+            repository.saveStartupSnapshot(snapshotRows, loadedCounts);
         }
 
-        totalCount.setText(String.valueOf(total));
-        activeCount.setText(String.valueOf(active));
-        expiringCount.setText(String.valueOf(expiring));
-        expiredCount.setText(String.valueOf(expired));
+        if (!fullyDrawn && listLoaded && loadedCounts != null) {
+            fullyDrawn = true;
+            // Logged by the system as "Fully drawn"; benchmark/startup.sh reads it
+            reportFullyDrawn();
+            Looper.myQueue().addIdleHandler(() -> {
+                startDeferredWork();
+                return false;
+            });
+        }
+    }
+
+    // Work the first screen doesn't need, started once the main thread is idle after
+    // startup (or after DEFERRED_WORK_TIMEOUT_MS if the dashboard never finished loading)
+    private void startDeferredWork() {
+        if (deferredWorkStarted || isDestroyed()) return;
+        deferredWorkStarted = true;
+        mainHandler.removeCallbacks(deferredWork);
+        scheduleNotifications();
     }
 
     private void updateEmptyState() {
-        if (filteredLicenses.isEmpty()) {
+        boolean empty = timelineGranularity != null ? timeline.isEmpty() : licenses.isEmpty();
+        if (empty) {
             emptyState.setVisibility(View.VISIBLE);
             licenseRecyclerView.setVisibility(View.GONE);
         } else {
@@ -152,7 +669,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void scheduleNotifications() {
-        // Schedule notifications for licenses expiring soon
-        NotificationScheduler.scheduleExpiryNotifications(this, allLicenses);
+        // Arm the single alarm for the next license reaching a notification threshold
+        repository.scheduleNotifications();
     }
 }
\ No newline at end of file
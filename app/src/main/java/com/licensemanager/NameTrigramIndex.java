@@ -0,0 +1,394 @@
+package com.licensemanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory trigram index of employee names for typo-tolerant search ("Jonh Smiht"
+ * finds "John Smith").
+ *
+ * Names are split into words the way LicenseSearch splits them, and every word is
+ * padded ("  john ") and cut into trigrams. Each distinct name is one entry, however
+ * many licenses carry it, and every trigram has a posting list of the entries that
+ * contain it. A query counts shared trigrams through the posting lists of its own
+ * trigrams only, keeps the entries sharing enough of them, and ranks those few by
+ * per-word edit distance, so no row outside the posting lists is ever compared.
+ *
+ * put() and remove() keep the index current as licenses change. Entries left without
+ * licenses are skipped by queries and dropped from the posting lists once they make up
+ * half of the index. Not thread-safe; DatabaseHelper serializes access.
+ */
+final class NameTrigramIndex {
+    // A candidate must share this fraction of the query's trigrams; low enough that a
+    // swapped pair in a short name ("jhon", which shares one trigram with "john") still
+    // counts while the candidate set is small
+    private static final double MIN_SHARED_TRIGRAMS = 0.2;
+    // Minimum average word similarity (1 - edits / longer word length) of a result
+    static final double MIN_SIMILARITY = 0.65;
+    // Entries ranked by edit distance per query, most shared trigrams first
+    private static final int MAX_CANDIDATES = 1000;
+
+    // One distinct normalized name and the licenses that carry it
+    private static final class Entry {
+        final String key;
+        final String[] words;
+        final int slot;
+        long[] ids = new long[1];
+        int idCount;
+
+        Entry(String key, String[] words, int slot) {
+            this.key = key;
+            this.words = words;
+            this.slot = slot;
+        }
+    }
+
+    // Posting list: slots of the entries containing one trigram, in insertion order
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // Entry of each slot; null once the entry has no licenses left
+    private Entry[] slots = new Entry[64];
+    private int slotCount;
+    private int deadSlots;
+
+    // License IDs in ascending order and the slot of each; removed IDs keep slot -1
+    // until the next compaction
+    private long[] ids = new long[64];
+    private int[] idSlots = new int[64];
+    private int idCount;
+    private int removedIds;
+
+    // Trigrams of the name or query at hand, shared-trigram counts per slot and edit
+    // distance rows, all reused between calls
+    private long[] trigramBuffer = new long[32];
+    private int[] counts = new int[64];
+    private int[][] distanceRows = new int[3][16];
+
+    int size() {
+        return idCount - removedIds;
+    }
+
+    // Add a license, or move it to its new name if it is already indexed
+    void put(long id, String name) {
+        String[] words = LicenseSearch.terms(name);
+        String key = key(words);
+        int position = findId(id);
+        if (position >= 0 && idSlots[position] >= 0) {
+            Entry current = slots[idSlots[position]];
+            if (current.key.equals(key)) return;
+            removeFromEntry(current, id);
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = addEntry(key, words);
+        }
+        if (entry.idCount == entry.ids.length) entry.ids = Arrays.copyOf(entry.ids, entry.idCount * 2);
+        entry.ids[entry.idCount++] = id;
+
+        if (position >= 0) {
+            if (idSlots[position] < 0) removedIds--;
+            idSlots[position] = entry.slot;
+        } else {
+            insertId(-(position + 1), id, entry.slot);
+        }
+        compactIfSparse();
+    }
+
+    void remove(long id) {
+        int position = findId(id);
+        if (position < 0 || idSlots[position] < 0) return;
+
+        removeFromEntry(slots[idSlots[position]], id);
+        idSlots[position] = -1;
+        removedIds++;
+        compactIfSparse();
+    }
+
+    /**
+     * IDs of the licenses whose name is within MIN_SIMILARITY of the query, best match
+     * first; licenses sharing a name are adjacent, in ID order. At most maxNames
+     * distinct names are returned.
+     */
+    long[] search(String query, int maxNames) {
+        String[] queryWords = LicenseSearch.terms(query);
+        if (queryWords.length == 0 || slotCount == 0) return new long[0];
+
+        int trigramCount = trigrams(queryWords);
+
+        // Count shared trigrams through the posting lists; touched lists each slot once
+        if (counts.length < slotCount) counts = new int[slots.length];
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        int maxShared = 0;
+        for (int t = 0; t < trigramCount; t++) {
+            Postings list = postings.get(trigramBuffer[t]);
+            if (list == null) continue;
+            // Dead entries are counted too and dropped below, keeping this loop tight
+            for (int i = 0; i < list.size; i++) {
+                int slot = list.slots[i];
+                if (counts[slot]++ == 0) {
+                    if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                    touched[touchedCount++] = slot;
+                }
+                maxShared = Math.max(maxShared, counts[slot]);
+            }
+        }
+
+        // Bucket the candidates by shared count so the cap keeps the closest ones
+        int minShared = Math.max(1, (int) Math.ceil(trigramCount * MIN_SHARED_TRIGRAMS));
+        int[] bucketSizes = new int[maxShared + 2];
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (slots[slot] == null) {
+                counts[slot] = 0;
+            } else if (counts[slot] >= minShared) {
+                bucketSizes[counts[slot]]++;
+            }
+        }
+        int cutoff = maxShared + 1;
+        int kept = 0;
+        while (cutoff > minShared && (kept == 0 || kept + bucketSizes[cutoff - 1] <= MAX_CANDIDATES)) {
+            cutoff--;
+            kept += bucketSizes[cutoff];
+        }
+
+        List<Entry> matches = new ArrayList<>();
+        final Map<Entry, Double> scores = new HashMap<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            int shared = counts[slot];
+            counts[slot] = 0;
+            if (shared < cutoff) continue;
+
+            Entry entry = slots[slot];
+            double score = similarity(queryWords, entry.words);
+            if (score >= MIN_SIMILARITY) {
+                matches.add(entry);
+                scores.put(entry, score);
+            }
+        }
+
+        matches.sort((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : a.key.compareTo(b.key);
+        });
+
+        int names = Math.min(maxNames, matches.size());
+        int total = 0;
+        for (int i = 0; i < names; i++) {
+            total += matches.get(i).idCount;
+        }
+        long[] result = new long[total];
+        int offset = 0;
+        for (int i = 0; i < names; i++) {
+            Entry entry = matches.get(i);
+            System.arraycopy(entry.ids, 0, result, offset, entry.idCount);
+            Arrays.sort(result, offset, offset + entry.idCount);
+            offset += entry.idCount;
+        }
+        return result;
+    }
+
+    /**
+     * How well the name's words cover the query's: for each query word the best
+     * similarity to any name word, averaged. A name word the query word is a prefix of
+     * counts as a full match, so names still match while they are being typed.
+     */
+    private double similarity(String[] queryWords, String[] nameWords) {
+        double total = 0;
+        for (String queryWord : queryWords) {
+            double best = 0;
+            for (String nameWord : nameWords) {
+                if (nameWord.startsWith(queryWord)) {
+                    best = 1;
+                    break;
+                }
+                // The length difference alone costs that many edits
+                int longer = Math.max(queryWord.length(), nameWord.length());
+                if (1 - (double) Math.abs(queryWord.length() - nameWord.length()) / longer <= best) continue;
+                best = Math.max(best, 1 - (double) editDistance(queryWord, nameWord) / longer);
+            }
+            total += best;
+        }
+        return total / queryWords.length;
+    }
+
+    // Optimal string alignment distance: insertions, deletions, substitutions and
+    // swaps of adjacent characters ("jonh" -> "john") each cost one edit
+    private int editDistance(String a, String b) {
+        int n = a.length();
+        int m = b.length();
+        if (distanceRows[0].length <= m) distanceRows = new int[3][m + 1];
+        int[] previous2 = distanceRows[0];
+        int[] previous = distanceRows[1];
+        int[] current = distanceRows[2];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int distance = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    distance = Math.min(distance, previous2[j - 2] + 1);
+                }
+                current[j] = distance;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[m];
+    }
+
+    // Words joined by single spaces; names that differ only in case or punctuation
+    // share one entry
+    private static String key(String[] words) {
+        StringBuilder key = new StringBuilder();
+        for (String word : words) {
+            if (key.length() > 0) key.append(' ');
+            key.append(word);
+        }
+        return key.toString();
+    }
+
+    // Distinct trigrams of the words, each padded with two spaces in front and one
+    // behind and packed three chars to a long, into trigramBuffer; returns the count
+    private int trigrams(String[] words) {
+        int needed = 0;
+        for (String word : words) {
+            needed += word.length() + 1;
+        }
+        if (trigramBuffer.length < needed) trigramBuffer = new long[needed];
+
+        int count = 0;
+        for (String word : words) {
+            char c0 = ' ';
+            char c1 = ' ';
+            int length = word.length();
+            for (int i = 0; i <= length; i++) {
+                char c2 = i < length ? word.charAt(i) : ' ';
+                trigramBuffer[count++] = (long) c0 << 32 | (long) c1 << 16 | c2;
+                c0 = c1;
+                c1 = c2;
+            }
+        }
+
+        Arrays.sort(trigramBuffer, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigramBuffer[i] != trigramBuffer[distinct - 1]) {
+                trigramBuffer[distinct++] = trigramBuffer[i];
+            }
+        }
+        return distinct;
+    }
+
+    private Entry addEntry(String key, String[] words) {
+        if (slotCount == slots.length) slots = Arrays.copyOf(slots, slotCount * 2);
+        Entry entry = new Entry(key, words, slotCount);
+        slots[slotCount++] = entry;
+        entries.put(key, entry);
+
+        int trigramCount = trigrams(words);
+        for (int t = 0; t < trigramCount; t++) {
+            Postings list = postings.get(trigramBuffer[t]);
+            if (list == null) {
+                list = new Postings();
+                postings.put(trigramBuffer[t], list);
+            }
+            list.add(entry.slot);
+        }
+        return entry;
+    }
+
+    private void removeFromEntry(Entry entry, long id) {
+        for (int i = 0; i < entry.idCount; i++) {
+            if (entry.ids[i] == id) {
+                entry.ids[i] = entry.ids[--entry.idCount];
+                break;
+            }
+        }
+        if (entry.idCount == 0) {
+            entries.remove(entry.key);
+            slots[entry.slot] = null;
+            deadSlots++;
+        }
+    }
+
+    // Position of the ID, or -(insertion point + 1) like Arrays.binarySearch
+    private int findId(long id) {
+        // IDs normally arrive in ascending order, so check the end first
+        if (idCount == 0 || id > ids[idCount - 1]) return -(idCount + 1);
+        return Arrays.binarySearch(ids, 0, idCount, id);
+    }
+
+    private void insertId(int position, long id, int slot) {
+        if (idCount == ids.length) {
+            ids = Arrays.copyOf(ids, idCount * 2);
+            idSlots = Arrays.copyOf(idSlots, idCount * 2);
+        }
+        System.arraycopy(ids, position, ids, position + 1, idCount - position);
+        System.arraycopy(idSlots, position, idSlots, position + 1, idCount - position);
+        ids[position] = id;
+        idSlots[position] = slot;
+        idCount++;
+    }
+
+    // Drop removed IDs and dead entries once they are half of the index, renumbering
+    // the live entries and rebuilding the posting lists
+    private void compactIfSparse() {
+        if (removedIds > 16 && removedIds * 2 > idCount) {
+            int kept = 0;
+            for (int i = 0; i < idCount; i++) {
+                if (idSlots[i] < 0) continue;
+                ids[kept] = ids[i];
+                idSlots[kept] = idSlots[i];
+                kept++;
+            }
+            idCount = kept;
+            removedIds = 0;
+        }
+
+        if (deadSlots > 16 && deadSlots * 2 > slotCount) {
+            Entry[] live = slots;
+            int liveCount = slotCount;
+            int[] newSlots = new int[liveCount];
+            slots = new Entry[Math.max(64, liveCount - deadSlots)];
+            slotCount = 0;
+            deadSlots = 0;
+            entries.clear();
+            postings.clear();
+            for (int i = 0; i < liveCount; i++) {
+                Entry old = live[i];
+                if (old == null) continue;
+                Entry entry = addEntry(old.key, old.words);
+                entry.ids = old.ids;
+                entry.idCount = old.idCount;
+                newSlots[i] = entry.slot;
+            }
+            for (int i = 0; i < idCount; i++) {
+                if (idSlots[i] >= 0) idSlots[i] = newSlots[idSlots[i]];
+            }
+            counts = new int[slots.length];
+        }
+    }
+}
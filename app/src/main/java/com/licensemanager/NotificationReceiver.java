@@ -7,21 +7,64 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
 public class NotificationReceiver extends BroadcastReceiver {
+    private static final String TAG = "NotificationReceiver";
     private static final String CHANNEL_ID = "license_expiry_channel";
     private static final String CHANNEL_NAME = "License Expiry Notifications";
     private static final String CHANNEL_DESCRIPTION = "Notifications for licenses approaching expiry";
 
+    // Notifications are told apart by tag, so two employees with the same name (or a
+    // license and a digest) never replace each other
+    static final String TAG_LICENSE = "license:";
+    private static final String TAG_DIGEST = "digest:";
+    static final int NOTIFICATION_ID = 0;
+    private static final String GROUP_PREFIX = "com.licensemanager.EXPIRY_";
+
+    // A threshold reached by several licenses on the same day gets one summary with at
+    // most this many lines, and at most this many individual notifications under it
+    private static final int MAX_DIGEST_LINES = 5;
+    private static final int MAX_DIGEST_CHILDREN = 5;
+
+    // Wakeups are handled one at a time, off the main thread
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor();
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        String licenseName = intent.getStringExtra("license_name");
-        int daysRemaining = intent.getIntExtra("days_remaining", 0);
-        
-        createNotificationChannel(context);
-        showNotification(context, licenseName, daysRemaining);
+        final Context appContext = context.getApplicationContext();
+        final boolean thresholdAlarm = NotificationScheduler.ACTION_THRESHOLD_DUE.equals(intent.getAction());
+        final int dueDay = intent.getIntExtra(NotificationScheduler.EXTRA_DUE_DAY, EpochDay.NONE);
+
+        // Keep the broadcast alive while the database is read in the background
+        final PendingResult pendingResult = goAsync();
+        EXECUTOR.execute(() -> {
+            try {
+                if (thresholdAlarm && dueDay != EpochDay.NONE) {
+                    // Licenses are read now, not from extras captured at scheduling time,
+                    // so renewed, renamed or deleted licenses are never announced
+                    List<License> due = NotificationScheduler.onAlarmFired(appContext, dueDay);
+                    if (due != null && !due.isEmpty()) {
+                        createNotificationChannel(appContext);
+                        showDueNotifications(appContext, EpochDay.today(), due);
+                    }
+                } else {
+                    // Per-license alarm left by an earlier version: its extras may be out
+                    // of date, so drop it and make sure the current alarm is armed instead
+                    NotificationScheduler.reconcile(appContext);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to handle expiry alarm", e);
+            } finally {
+                pendingResult.finish();
+            }
+        });
     }
 
     private void createNotificationChannel(Context context) {
@@ -38,39 +81,106 @@ public class NotificationReceiver extends BroadcastReceiver {
         }
     }
 
-    private void showNotification(Context context, String licenseName, int daysRemaining) {
-        NotificationManager notificationManager = 
-            (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+    // The licenses come ordered by expiry day, so each days-remaining value is one
+    // contiguous run
+    private void showDueNotifications(Context context, int today, List<License> due) {
+        int start = 0;
+        while (start < due.size()) {
+            int daysRemaining = due.get(start).getExpiryDay() - today;
+            int end = start + 1;
+            while (end < due.size() && due.get(end).getExpiryDay() - today == daysRemaining) {
+                end++;
+            }
+
+            List<License> group = due.subList(start, end);
+            if (group.size() == 1) {
+                notify(context, TAG_LICENSE + group.get(0).getId(),
+                        newBuilder(context, licenseMessage(context, group.get(0), daysRemaining)));
+            } else {
+                showDigest(context, group, daysRemaining);
+            }
+            start = end;
+        }
+    }
+
+    // One summary for the threshold plus a capped number of per-license children. Only
+    // the summary alerts; the children let the user expand the group.
+    private void showDigest(Context context, List<License> group, int daysRemaining) {
+        String groupKey = GROUP_PREFIX + daysRemaining;
+        int size = group.size();
+
+        int children = Math.min(size, MAX_DIGEST_CHILDREN);
+        for (int i = 0; i < children; i++) {
+            License license = group.get(i);
+            notify(context, TAG_LICENSE + license.getId(),
+                    newBuilder(context, licenseMessage(context, license, daysRemaining))
+                            .setGroup(groupKey)
+                            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY));
+        }
 
+        String title = size + " licenses " + expiryPhrase(daysRemaining);
+        NotificationCompat.InboxStyle inbox = new NotificationCompat.InboxStyle().setBigContentTitle(title);
+        int lines = Math.min(size, MAX_DIGEST_LINES);
+        for (int i = 0; i < lines; i++) {
+            License license = group.get(i);
+            inbox.addLine(license.getName() + " \u2014 " + license.getType());
+        }
+        if (size > lines) {
+            inbox.setSummaryText("+" + (size - lines) + " more");
+        }
+
+        notify(context, TAG_DIGEST + daysRemaining, newBuilder(context, title)
+                .setStyle(inbox)
+                .setNumber(size)
+                .setGroup(groupKey)
+                .setGroupSummary(true)
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY));
+    }
+
+    private String licenseMessage(Context context, License license, int daysRemaining) {
+        if (daysRemaining < 0) {
+            // A threshold delivered late can fall after the expiry date
+            return license.getName() + " has expired";
+        } else if (daysRemaining == 0) {
+            return license.getName() + " expires today!";
+        } else if (daysRemaining == 1) {
+            return license.getName() + " expires in 1 day";
+        } else {
+            return String.format(context.getString(R.string.notification_text),
+                    license.getName(), license.getType(), license.getExpiryDate());
+        }
+    }
+
+    private static String expiryPhrase(int daysRemaining) {
+        if (daysRemaining < 0) return "have expired";
+        if (daysRemaining == 0) return "expire today";
+        if (daysRemaining == 1) return "expire in 1 day";
+        return "expire in " + daysRemaining + " days";
+    }
+
+    private NotificationCompat.Builder newBuilder(Context context, String message) {
         // Create intent to open the app
         Intent intent = new Intent(context, MainActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        
+
         PendingIntent pendingIntent = PendingIntent.getActivity(
-                context, 0, intent, 
+                context, 0, intent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
 
-        String title = context.getString(R.string.notification_title);
-        String message;
-        
-        if (daysRemaining == 0) {
-            message = licenseName + " expires today!";
-        } else if (daysRemaining == 1) {
-            message = licenseName + " expires in 1 day";
-        } else {
-            message = String.format(context.getString(R.string.notification_text), licenseName, daysRemaining);
-        }
-
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+        return new NotificationCompat.Builder(context, CHANNEL_ID)
                 .setSmallIcon(R.drawable.ic_notification)
-                .setContentTitle(title)
+                .setContentTitle(context.getString(R.string.notification_title))
                 .setContentText(message)
                 .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
                 .setPriority(NotificationCompat.PRIORITY_DEFAULT)
                 .setContentIntent(pendingIntent)
                 .setAutoCancel(true);
+    }
 
-        notificationManager.notify(licenseName.hashCode(), builder.build());
+    private void notify(Context context, String tag, NotificationCompat.Builder builder) {
+        NotificationManager notificationManager =
+            (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(tag, NOTIFICATION_ID, builder.build());
     }
-}
\ No newline at end of file
+}
@@ -1,92 +1,203 @@
 package com.licensemanager;
 
 import android.app.AlarmManager;
+import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
+/**
+ * Keeps a single alarm pending: the earliest upcoming notification threshold of any
+ * license, found with one index query. When it fires, NotificationReceiver notifies
+ * every license due that day and calls back here to arm the next one, so the number
+ * of registered alarms no longer grows with the roster.
+ *
+ * Every alarm registered is recorded in the alarm ledger table. A single license
+ * write is reconciled against the ledger from that license's own thresholds and only
+ * re-arms when it moves the next due day; startup only re-arms when the ledger and
+ * the data (or the registered PendingIntent) disagree.
+ */
 public class NotificationScheduler {
-    private static final int[] NOTIFICATION_DAYS = {90, 60, 30, 14, 7, 1, 0}; // Days before expiry to notify
+    private static final int[] NOTIFICATION_DAYS = ExpiryThresholds.NOTIFICATION_DAYS;
+    private static final int NOTIFICATION_HOUR = 9; // Notifications go out at 9 AM
 
-    public static void scheduleExpiryNotifications(Context context, List<License> licenses) {
+    static final String ACTION_THRESHOLD_DUE = "com.licensemanager.action.THRESHOLD_DUE";
+    static final String EXTRA_DUE_DAY = "due_day";
+    // The ledger key and PendingIntent request code of the next-due alarm. Request codes
+    // are fixed per alarm, not derived from license IDs, so they cannot overflow or collide.
+    static final int REQUEST_CODE_NEXT_ALARM = 0;
+    // Oldest threshold day still notified when an alarm is delivered late
+    private static final int MAX_CATCH_UP_DAYS = 7;
+
+    private static final String PREFS_NAME = "notification_scheduler";
+    private static final String KEY_LEGACY_ALARMS_CANCELLED = "legacy_alarms_cancelled";
+
+    // Compare the ledger with the data and the registered alarm; re-arm only if they
+    // disagree (new data, reboot, force-stop or a time zone change). Runs database
+    // queries, so call it off the main thread.
+    public static synchronized void reconcile(Context context) {
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        
-        for (License license : licenses) {
-            if (!license.isExpired()) {
-                scheduleNotificationsForLicense(context, alarmManager, license);
-            }
+        cancelLegacyAlarms(context, databaseHelper, alarmManager);
+
+        int dueDay = databaseHelper.getNextThresholdDay(firstUpcomingDay(System.currentTimeMillis()), NOTIFICATION_DAYS);
+        ScheduledAlarm recorded = databaseHelper.getScheduledAlarm(REQUEST_CODE_NEXT_ALARM);
+
+        if (dueDay == EpochDay.NONE) {
+            if (recorded != null) arm(context, databaseHelper, alarmManager, EpochDay.NONE);
+        } else if (recorded == null || recorded.dueDay != dueDay
+                || recorded.triggerAt != notificationTime(dueDay) || !isRegistered(context)) {
+            arm(context, databaseHelper, alarmManager, dueDay);
         }
     }
 
-    private static void scheduleNotificationsForLicense(Context context, AlarmManager alarmManager, License license) {
-        try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            Date expiryDate = sdf.parse(license.getExpiryDate());
-            
-            if (expiryDate == null) return;
-
-            Calendar expiryCalendar = Calendar.getInstance();
-            expiryCalendar.setTime(expiryDate);
-            
-            Calendar today = Calendar.getInstance();
-            
-            for (int days : NOTIFICATION_DAYS) {
-                Calendar notificationDate = (Calendar) expiryCalendar.clone();
-                notificationDate.add(Calendar.DAY_OF_YEAR, -days);
-                
-                // Only schedule if notification date is in the future
-                if (notificationDate.after(today)) {
-                    scheduleNotification(context, alarmManager, license, notificationDate, days);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+    // Arm the alarm for the first threshold still ahead of now, replacing any pending one
+    public static void scheduleNextAlarm(Context context) {
+        scheduleNextAlarm(context, firstUpcomingDay(System.currentTimeMillis()));
+    }
+
+    // Arm the alarm for the first threshold on or after fromDay
+    static synchronized void scheduleNextAlarm(Context context, int fromDay) {
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        cancelLegacyAlarms(context, databaseHelper, alarmManager);
+
+        arm(context, databaseHelper, alarmManager, databaseHelper.getNextThresholdDay(fromDay, NOTIFICATION_DAYS));
+    }
+
+    /**
+     * Reconcile after one license was inserted (old day NONE), updated or deleted (new
+     * day NONE). Moving the alarm earlier needs no query; only when the license may
+     * have been the one the pending alarm was for is the next due day looked up again.
+     */
+    public static synchronized void onLicenseChanged(Context context, int oldExpiryDay, int newExpiryDay) {
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
+        ScheduledAlarm recorded = databaseHelper.getScheduledAlarm(REQUEST_CODE_NEXT_ALARM);
+        int fromDay = firstUpcomingDay(System.currentTimeMillis());
+        int oldDue = ExpiryThresholds.nextThresholdDay(oldExpiryDay, fromDay);
+        int newDue = ExpiryThresholds.nextThresholdDay(newExpiryDay, fromDay);
+
+        if (recorded == null || recorded.dueDay < fromDay) {
+            // Nothing armed (or a missed alarm): a full lookup is needed either way
+            scheduleNextAlarm(context, fromDay);
+        } else if (newDue != EpochDay.NONE && newDue < recorded.dueDay) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            arm(context, databaseHelper, alarmManager, newDue);
+        } else if (oldDue == recorded.dueDay && newDue != recorded.dueDay) {
+            // The pending day may have lost its only license
+            scheduleNextAlarm(context, fromDay);
         }
     }
 
-    private static void scheduleNotification(Context context, AlarmManager alarmManager, 
-                                           License license, Calendar notificationDate, int daysRemaining) {
-        Intent intent = new Intent(context, NotificationReceiver.class);
-        intent.putExtra("license_name", license.getName());
-        intent.putExtra("days_remaining", daysRemaining);
-        
-        // Create unique request code for each notification
-        int requestCode = (int) (license.getId() * 100 + daysRemaining);
-        
+    // Reconcile after a delete and withdraw any notification already shown for the license
+    public static void onLicenseDeleted(Context context, long licenseId, int oldExpiryDay) {
+        NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.cancel(NotificationReceiver.TAG_LICENSE + licenseId, NotificationReceiver.NOTIFICATION_ID);
+
+        onLicenseChanged(context, oldExpiryDay, EpochDay.NONE);
+    }
+
+    /**
+     * Called by NotificationReceiver, off the main thread, when the next-due alarm fires.
+     * Returns every license with a threshold from the alarm's day up to the last day
+     * whose notification time has passed (at most MAX_CATCH_UP_DAYS, for alarms held
+     * back by Doze), read in one query. Returns null for a stale alarm: one that is no
+     * longer the alarm in the ledger or fired ahead of its day. The next alarm is armed
+     * from the current data either way.
+     */
+    static synchronized List<License> onAlarmFired(Context context, int alarmDueDay) {
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
+        int upcomingDay = firstUpcomingDay(System.currentTimeMillis());
+        ScheduledAlarm recorded = databaseHelper.getScheduledAlarm(REQUEST_CODE_NEXT_ALARM);
+
+        List<License> due = null;
+        if (recorded != null && recorded.dueDay == alarmDueDay && alarmDueDay < upcomingDay) {
+            int fromDay = Math.max(alarmDueDay, upcomingDay - MAX_CATCH_UP_DAYS);
+            due = databaseHelper.getLicensesDueBetween(fromDay, upcomingDay - 1, NOTIFICATION_DAYS);
+        }
+
+        scheduleNextAlarm(context, upcomingDay);
+        return due;
+    }
+
+    // First day whose notification time is still ahead of the given instant
+    static int firstUpcomingDay(long now) {
+        int today = EpochDay.fromMillis(now);
+        return now < notificationTime(today) ? today : today + 1;
+    }
+
+    // Alarm time for thresholds falling on the day
+    static long notificationTime(int day) {
+        return EpochDay.toMillis(day, NOTIFICATION_HOUR);
+    }
+
+    // Register (or cancel, for EpochDay.NONE) the next-due alarm and record it in the ledger
+    private static void arm(Context context, DatabaseHelper databaseHelper, AlarmManager alarmManager, int dueDay) {
+        Intent intent = alarmIntent(context);
+        intent.putExtra(EXTRA_DUE_DAY, dueDay);
+        // FLAG_UPDATE_CURRENT replaces the due day of the pending alarm
         PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context, requestCode, intent, 
+                context, REQUEST_CODE_NEXT_ALARM, intent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
 
-        // Set notification time to 9 AM
-        notificationDate.set(Calendar.HOUR_OF_DAY, 9);
-        notificationDate.set(Calendar.MINUTE, 0);
-        notificationDate.set(Calendar.SECOND, 0);
+        if (dueDay == EpochDay.NONE) {
+            alarmManager.cancel(pendingIntent);
+            pendingIntent.cancel();
+            databaseHelper.deleteScheduledAlarm(REQUEST_CODE_NEXT_ALARM);
+        } else {
+            long triggerAt = notificationTime(dueDay);
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+            databaseHelper.putScheduledAlarm(new ScheduledAlarm(REQUEST_CODE_NEXT_ALARM, dueDay, triggerAt));
+        }
+    }
+
+    // Alarms and their PendingIntents are dropped on reboot and force-stop
+    private static boolean isRegistered(Context context) {
+        return PendingIntent.getBroadcast(
+                context, REQUEST_CODE_NEXT_ALARM, alarmIntent(context),
+                PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE
+        ) != null;
+    }
 
-        alarmManager.setExact(AlarmManager.RTC_WAKEUP, 
-                             notificationDate.getTimeInMillis(), 
-                             pendingIntent);
+    private static Intent alarmIntent(Context context) {
+        Intent intent = new Intent(context, NotificationReceiver.class);
+        intent.setAction(ACTION_THRESHOLD_DUE);
+        return intent;
     }
 
-    public static void cancelNotificationsForLicense(Context context, long licenseId) {
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        
-        for (int days : NOTIFICATION_DAYS) {
-            Intent intent = new Intent(context, NotificationReceiver.class);
-            int requestCode = (int) (licenseId * 100 + days);
-            
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                    context, requestCode, intent, 
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-            
-            alarmManager.cancel(pendingIntent);
-        }
+    // Earlier versions registered an alarm per license and threshold with request code
+    // licenseId * 100 + days. Cancel those once so they don't fire alongside the new one.
+    private static void cancelLegacyAlarms(Context context, DatabaseHelper databaseHelper,
+                                           AlarmManager alarmManager) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_LEGACY_ALARMS_CANCELLED, false)) return;
+
+        int pageSize = LicensePagedList.DEFAULT_PAGE_SIZE * 10;
+        License after = null;
+        List<License> page;
+        do {
+            page = databaseHelper.getLicensesPage(LicenseFilter.ALL, after, pageSize);
+            for (License license : page) {
+                for (int days : NOTIFICATION_DAYS) {
+                    Intent intent = new Intent(context, NotificationReceiver.class);
+                    PendingIntent pendingIntent = PendingIntent.getBroadcast(
+                            context, (int) (license.getId() * 100 + days), intent,
+                            PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE
+                    );
+                    if (pendingIntent != null) {
+                        alarmManager.cancel(pendingIntent);
+                        pendingIntent.cancel();
+                    }
+                }
+            }
+            if (!page.isEmpty()) after = page.get(page.size() - 1);
+        } while (page.size() == pageSize);
+
+        prefs.edit().putBoolean(KEY_LEGACY_ALARMS_CANCELLED, true).apply();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+package com.licensemanager;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-query call counts, row counts and latency histograms for DatabaseHelper.
+ *
+ * Every public DatabaseHelper operation brackets itself with start() and end(). While
+ * disabled (the default in release builds) start() returns 0 without reading the
+ * clock and end() returns straight away, so the cost is one volatile read per call.
+ * Queries slower than the threshold are logged as they happen; dump() formats the
+ * whole table with p50/p95/p99 for the debug tooling.
+ */
+public final class QueryStats {
+    private static final String TAG = "QueryStats";
+    private static final long DEFAULT_SLOW_QUERY_MILLIS = 50;
+
+    private static volatile boolean enabled;
+    private static volatile long slowQueryNanos = DEFAULT_SLOW_QUERY_MILLIS * 1_000_000L;
+    private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private QueryStats() {}
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        QueryStats.enabled = enabled;
+    }
+
+    public static void setSlowQueryThresholdMillis(long millis) {
+        slowQueryNanos = millis * 1_000_000L;
+    }
+
+    // Start of a timed operation, or 0 when instrumentation is off
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // Record an operation started with start(); rows is the number of rows it returned
+    // or changed
+    static void end(String query, long start, int rows) {
+        if (start == 0) return;
+        long nanos = System.nanoTime() - start;
+
+        Histogram histogram = histograms.get(query);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = histograms.putIfAbsent(query, created);
+            if (histogram == null) histogram = created;
+        }
+        histogram.record(nanos / 1000, rows);
+
+        if (nanos >= slowQueryNanos) {
+            Log.w(TAG, String.format(Locale.US, "slow query: %s took %.1f ms (%d rows)",
+                    query, nanos / 1e6, rows));
+        }
+    }
+
+    public static void reset() {
+        histograms.clear();
+    }
+
+    // One line per query, busiest first; latencies in microseconds
+    public static String dump() {
+        List<String> names = new ArrayList<>(histograms.keySet());
+        Collections.sort(names, (a, b) -> Long.compare(
+                histograms.get(b).calls.get(), histograms.get(a).calls.get()));
+
+        StringBuilder out = new StringBuilder(String.format(Locale.US,
+                "%-28s %8s %10s %9s %9s %9s %9s %9s%n",
+                "query", "calls", "rows", "mean_us", "p50_us", "p95_us", "p99_us", "max_us"));
+        for (String name : names) {
+            Histogram histogram = histograms.get(name);
+            long calls = histogram.calls.get();
+            if (calls == 0) continue;
+            out.append(String.format(Locale.US, "%-28s %8d %10d %9d %9d %9d %9d %9d%n",
+                    name, calls, histogram.rows.get(), histogram.totalMicros.get() / calls,
+                    histogram.percentile(0.50), histogram.percentile(0.95),
+                    histogram.percentile(0.99), histogram.maxMicros.get()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Log-linear latency histogram: exact below 16 us, then 8 buckets per power of two,
+     * so any percentile is reported within 12.5% of the true value. Recording is a few
+     * atomic increments and never allocates.
+     */
+    static final class Histogram {
+        private static final int LINEAR_BUCKETS = 16;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        // Powers of two from 2^4 us up to 2^39 us (about six days)
+        private static final int BUCKET_COUNT = LINEAR_BUCKETS + (40 - 4) * SUB_BUCKETS;
+
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong totalMicros = new AtomicLong();
+        final AtomicLong maxMicros = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+        void record(long micros, int rowCount) {
+            calls.incrementAndGet();
+            rows.addAndGet(rowCount);
+            totalMicros.addAndGet(micros);
+            buckets.incrementAndGet(bucketOf(micros));
+
+            long max = maxMicros.get();
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+        }
+
+        // Upper bound of the bucket holding the given fraction of samples
+        long percentile(double fraction) {
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) total += buckets.get(i);
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), maxMicros.get());
+            }
+            return maxMicros.get();
+        }
+
+        static int bucketOf(long micros) {
+            if (micros < LINEAR_BUCKETS) return (int) Math.max(micros, 0);
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            int index = LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + sub;
+            return Math.min(index, BUCKET_COUNT - 1);
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < LINEAR_BUCKETS) return bucket;
+            int exponent = 4 + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+            int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+            return (1L << exponent) + (sub + 1) * width - 1;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.licensemanager;
+
+/**
+ * An alarm recorded in the alarm ledger: the day whose notifications it delivers and
+ * the instant it was registered for.
+ */
+public class ScheduledAlarm {
+    public final int requestCode;
+    public final int dueDay;
+    public final long triggerAt;
+
+    public ScheduledAlarm(int requestCode, int dueDay, long triggerAt) {
+        this.requestCode = requestCode;
+        this.dueDay = dueDay;
+        this.triggerAt = triggerAt;
+    }
+}
@@ -0,0 +1,146 @@
+package com.licensemanager;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The first screen of the unfiltered license list and the dashboard counts, kept in a
+ * small file so MainActivity can draw its first frame without waiting for the
+ * database. The real results replace it as soon as they are loaded.
+ *
+ * Counts are only used on the day they were computed; rows are always usable because
+ * their status is worked out from the expiry date when they are bound.
+ */
+final class StartupSnapshot {
+    private static final String TAG = "StartupSnapshot";
+    private static final String FILE_NAME = "startup_snapshot.bin";
+    private static final int FORMAT_VERSION = 1;
+
+    // Enough rows to fill the first screen of a tall phone
+    static final int MAX_ROWS = 20;
+    // The list card only shows the start of the notes, so long ones are cut short
+    private static final int MAX_DESCRIPTION_CHARS = 500;
+
+    final List<License> rows;
+    // Null if the counts were saved on another day
+    final StatusCounts counts;
+
+    // Contents of the file as last read or written, to skip rewriting an unchanged snapshot
+    private static byte[] lastSaved;
+
+    private StartupSnapshot(List<License> rows, StatusCounts counts) {
+        this.rows = rows;
+        this.counts = counts;
+    }
+
+    // The saved snapshot, or null if there is none or it can't be read. The file is a
+    // few KB, so this is cheap enough to call on the main thread before the first frame.
+    static StartupSnapshot read(Context context) {
+        try {
+            byte[] data = file(context).readFully();
+            StartupSnapshot snapshot = decode(data, EpochDay.today());
+            synchronized (StartupSnapshot.class) {
+                if (lastSaved == null) lastSaved = data;
+            }
+            return snapshot;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable startup snapshot", e);
+            return null;
+        }
+    }
+
+    // Replace the snapshot with the given rows and counts, unless they are what is
+    // already saved. Writes a file, so call it off the main thread.
+    static synchronized void save(Context context, List<License> rows, StatusCounts counts) {
+        AtomicFile file = file(context);
+        FileOutputStream out = null;
+        try {
+            byte[] data = encode(rows, counts, EpochDay.today());
+            if (Arrays.equals(data, lastSaved)) return;
+
+            out = file.startWrite();
+            out.write(data);
+            file.finishWrite(out);
+            lastSaved = data;
+        } catch (IOException e) {
+            if (out != null) file.failWrite(out);
+            Log.w(TAG, "Failed to save startup snapshot", e);
+        }
+    }
+
+    private static AtomicFile file(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    private static byte[] encode(List<License> rows, StatusCounts counts, int today) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(today);
+            out.writeInt(counts.total);
+            out.writeInt(counts.expiringSoon);
+            out.writeInt(counts.expired);
+
+            int count = Math.min(rows.size(), MAX_ROWS);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                License license = rows.get(i);
+                out.writeLong(license.getId());
+                writeString(out, license.getName());
+                writeString(out, license.getType());
+                writeString(out, license.getExpiryDate());
+                String description = license.getDescription();
+                if (description != null && description.length() > MAX_DESCRIPTION_CHARS) {
+                    description = description.substring(0, MAX_DESCRIPTION_CHARS);
+                }
+                writeString(out, description);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static StartupSnapshot decode(byte[] data, int today) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown snapshot version");
+        }
+        int day = in.readInt();
+        StatusCounts counts = new StatusCounts(in.readInt(), in.readInt(), in.readInt());
+
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ROWS) {
+            throw new IOException("Bad row count " + count);
+        }
+        List<License> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            rows.add(new License(id, readString(in), readString(in), readString(in), readString(in)));
+        }
+        return new StartupSnapshot(Collections.unmodifiableList(rows), day == today ? counts : null);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.licensemanager;
+
+/**
+ * Dashboard totals by license status, as counted by DatabaseHelper.getStatusCounts.
+ */
+public class StatusCounts {
+    public final int total;
+    public final int active;
+    public final int expiringSoon;
+    public final int expired;
+
+    public StatusCounts(int total, int expiringSoon, int expired) {
+        this.total = total;
+        this.expiringSoon = expiringSoon;
+        this.expired = expired;
+        // Rows without a parseable date count as active, as in License.getStatus
+        this.active = total - expiringSoon - expired;
+    }
+}
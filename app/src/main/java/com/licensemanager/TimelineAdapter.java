@@ -0,0 +1,231 @@
+package com.licensemanager;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Canvas;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Shows an ExpiryTimeline: a header per week or month with its license counts by type,
+ * and the bucket's license cards below it while it is expanded. Tapping a header
+ * expands or collapses it; the "more" row at the end of a bucket loads its next rows.
+ */
+public class TimelineAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements ExpiryTimeline.Callback {
+    private final Context context;
+    private final ExpiryTimeline timeline;
+    // Main thread only, like every bind
+    private final SimpleDateFormat monthFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
+    private StickyHeaderDecoration stickyHeaders;
+
+    public TimelineAdapter(Context context, ExpiryTimeline timeline) {
+        this.context = context;
+        this.timeline = timeline;
+        timeline.addCallback(this);
+    }
+
+    // Draws the header of the bucket at the top of the list over its rows
+    public RecyclerView.ItemDecoration getStickyHeaders() {
+        if (stickyHeaders == null) stickyHeaders = new StickyHeaderDecoration();
+        return stickyHeaders;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return timeline.getItemType(position);
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(context);
+        switch (viewType) {
+            case ExpiryTimeline.ITEM_HEADER: {
+                HeaderViewHolder holder = new HeaderViewHolder(
+                        inflater.inflate(R.layout.item_timeline_header, parent, false));
+                holder.itemView.setOnClickListener(v -> {
+                    int position = holder.getBindingAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) return;
+                    timeline.toggle(timeline.bucketIndexAt(position));
+                });
+                return holder;
+            }
+            case ExpiryTimeline.ITEM_LICENSE: {
+                LicenseAdapter.LicenseViewHolder holder = new LicenseAdapter.LicenseViewHolder(
+                        inflater.inflate(R.layout.item_license, parent, false));
+                holder.openEditor = v -> {
+                    int position = holder.getBindingAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) return;
+
+                    Intent intent = new Intent(context, AddEditLicenseActivity.class);
+                    intent.putExtra("license_id", timeline.getLicense(position).getId());
+                    context.startActivity(intent);
+                };
+                holder.cardView.setOnClickListener(holder.openEditor);
+                return holder;
+            }
+            default: {
+                MoreViewHolder holder = new MoreViewHolder(
+                        inflater.inflate(R.layout.item_timeline_more, parent, false));
+                holder.itemView.setOnClickListener(v -> {
+                    int position = holder.getBindingAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) return;
+                    timeline.loadMore(timeline.bucketIndexAt(position));
+                });
+                return holder;
+            }
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        if (holder instanceof HeaderViewHolder) {
+            bindHeader((HeaderViewHolder) holder, timeline.getBucket(timeline.bucketIndexAt(position)));
+        } else if (holder instanceof LicenseAdapter.LicenseViewHolder) {
+            LicenseAdapter.bindLicense((LicenseAdapter.LicenseViewHolder) holder,
+                    timeline.getLicense(position), EpochDay.today());
+        } else {
+            ExpiryTimeline.Bucket bucket = timeline.getBucket(timeline.bucketIndexAt(position));
+            ((MoreViewHolder) holder).more.setText(bucket.isLoading()
+                    ? context.getString(R.string.timeline_loading)
+                    : context.getString(R.string.timeline_show_more, bucket.getRemaining()));
+        }
+    }
+
+    private void bindHeader(HeaderViewHolder holder, ExpiryTimeline.Bucket bucket) {
+        if (timeline.getGranularity() == ExpiryTimeline.Granularity.WEEK) {
+            holder.label.setText(context.getString(R.string.timeline_week_of, EpochDay.format(bucket.startDay)));
+        } else {
+            holder.label.setText(monthFormat.format(new Date(EpochDay.toMillis(bucket.startDay, 12))));
+        }
+        holder.count.setText(String.valueOf(bucket.getTotal()));
+        holder.arrow.setText(bucket.isExpanded() ? "\u25BE" : "\u25B8");
+
+        StringBuilder types = new StringBuilder();
+        for (int i = 0; i < bucket.getTypeCount(); i++) {
+            if (i > 0) types.append(" \u00B7 ");
+            String type = bucket.getType(i);
+            types.append(type != null ? type : "?").append(' ').append(bucket.getTypeTotal(i));
+        }
+        holder.types.setText(types);
+    }
+
+    @Override
+    public int getItemCount() {
+        return timeline.size();
+    }
+
+    // The timeline reports exactly which items moved, so only those are rebound
+    @Override
+    public void onReset() {
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onItemRangeInserted(int start, int count) {
+        notifyItemRangeInserted(start, count);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int start, int count) {
+        notifyItemRangeRemoved(start, count);
+    }
+
+    @Override
+    public void onItemChanged(int position) {
+        notifyItemChanged(position);
+    }
+
+    static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        TextView label, types, count, arrow;
+
+        HeaderViewHolder(@NonNull View itemView) {
+            super(itemView);
+            label = itemView.findViewById(R.id.timelineLabel);
+            types = itemView.findViewById(R.id.timelineTypes);
+            count = itemView.findViewById(R.id.timelineCount);
+            arrow = itemView.findViewById(R.id.timelineArrow);
+        }
+    }
+
+    static class MoreViewHolder extends RecyclerView.ViewHolder {
+        TextView more;
+
+        MoreViewHolder(@NonNull View itemView) {
+            super(itemView);
+            more = (TextView) itemView;
+        }
+    }
+
+    /**
+     * Keeps the header of the topmost bucket pinned, pushed up by the next header as it
+     * arrives. The bucket of the top row is a binary search over the timeline's header
+     * positions, and the pinned view is only rebound when that bucket or the timeline
+     * changes, so a scroll frame costs a lookup and a draw.
+     */
+    private class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
+        private HeaderViewHolder header;
+        private int boundBucket = -1;
+        private int boundVersion = -1;
+        private int boundWidth = -1;
+
+        @Override
+        public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+            if (parent.getChildCount() == 0 || timeline.isEmpty()) return;
+            int topPosition = parent.getChildAdapterPosition(parent.getChildAt(0));
+            if (topPosition == RecyclerView.NO_POSITION || topPosition >= timeline.size()) return;
+
+            int bucketIndex = timeline.bucketIndexAt(topPosition);
+            View view = headerFor(parent, bucketIndex);
+
+            // The next bucket's header, once it reaches the pinned one, pushes it up
+            int offset = 0;
+            if (bucketIndex + 1 < timeline.getBucketCount()) {
+                int nextHeader = timeline.headerPosition(bucketIndex + 1);
+                for (int i = 0; i < parent.getChildCount(); i++) {
+                    View child = parent.getChildAt(i);
+                    if (parent.getChildAdapterPosition(child) == nextHeader) {
+                        offset = Math.min(0, child.getTop() - view.getHeight());
+                        break;
+                    }
+                }
+            }
+
+            canvas.save();
+            canvas.translate(parent.getPaddingLeft(), offset);
+            view.draw(canvas);
+            canvas.restore();
+        }
+
+        private View headerFor(RecyclerView parent, int bucketIndex) {
+            if (header == null) {
+                header = new HeaderViewHolder(LayoutInflater.from(parent.getContext())
+                        .inflate(R.layout.item_timeline_header, parent, false));
+            }
+            int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+            if (bucketIndex == boundBucket && timeline.getVersion() == boundVersion && width == boundWidth) {
+                return header.itemView;
+            }
+
+            bindHeader(header, timeline.getBucket(bucketIndex));
+            View view = header.itemView;
+            view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+            view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+            boundBucket = bucketIndex;
+            boundVersion = timeline.getVersion();
+            boundWidth = width;
+            return view;
+        }
+    }
+}
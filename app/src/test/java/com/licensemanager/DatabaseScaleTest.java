@@ -0,0 +1,337 @@
+package com.licensemanager;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scaling suite for DatabaseHelper with latency and allocation budgets, run on the JVM
+ * by ./gradlew check. Robolectric's native SQLite is the same engine as on a device,
+ * with FTS4 and the unicode61 tokenizer.
+ *
+ * Each test seeds a fresh database (10k or 100k rows), times the main read and write
+ * operations and fails listing every operation over its budget. Budgets can be
+ * overridden per run with flat values:
+ *   ./gradlew :app:testDebugUnitTest -Dscale.budget_us.searchLicenses=20000   (microseconds per operation)
+ *   ./gradlew :app:testDebugUnitTest -Dscale.budget_kb.getAllLicenses=40000   (KB allocated per operation)
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class DatabaseScaleTest {
+    // Default budgets per operation, set for a mid-range device, so a CI host has room
+    // to spare and an operation over budget is a real regression. Searches
+    // and whole-table reads return more rows as the table grows, so part of their
+    // budget is per 1,000 rows.
+    private static final Budget[] DEFAULT_BUDGETS = {
+            new Budget("insertLicense", 500, 0, 4, 0),
+            new Budget("getLicense", 300, 0, 4, 0),
+            new Budget("getLicenseCount", 2_000, 0, 1, 0),
+            new Budget("searchLicenses", 2_000, 600, 16, 100),
+            new Budget("getAllLicenses", 0, 3_000, 0, 400),
+            new Budget("export.csv", 1_000, 15_000, 128, 40),
+            new Budget("export.jsonl", 1_000, 20_000, 128, 40),
+            new Budget("backup", 1_000, 5_000, 256, 200),
+            new Budget("restore", 5_000, 8_000, 256, 300),
+            new Budget("searchLicensesFuzzy", 5_000, 0, 128, 0),
+            new Budget("nameIndex.search", 2_000, 300, 64, 16),
+            new Budget("nameIndex.put", 50, 0, 2, 0),
+            new Budget("timeline.weeks", 5_000, 400, 64, 2),
+            new Budget("timeline.months", 5_000, 400, 32, 1),
+    };
+
+    private static final String[] FIRST_NAMES = {"John", "Sarah", "Michael", "Emma", "David", "Olivia", "James", "Sophie"};
+    private static final String[] LAST_NAMES = {"Smith", "Jones", "Williams", "Brown", "Wilson", "Taylor", "Nguyen", "Kelly"};
+    private static final String[] TYPES = {"DGSC", "Shotfirer", "Forklift"};
+    private static final String[] QUERIES = {"jo", "sarah", "smith", "shotfirer", "em wil", "renewal"};
+    private static final String[] FUZZY_QUERIES = {"jonh smiht", "sarha", "micheal willaims", "olivai tayler", "ngyuen"};
+    // Syllables for the distinct names of the trigram index run
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ra", "ten", "jo", "an", "son", "el", "ber",
+            "ta", "ri", "no", "va", "sh", "ch", "ing", "ar", "ley", "ton"};
+
+    private Context context;
+    private Budget[] budgets;
+    private final List<String> failures = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        budgets = new Budget[DEFAULT_BUDGETS.length];
+        for (int i = 0; i < budgets.length; i++) {
+            Budget budget = DEFAULT_BUDGETS[i];
+            budgets[i] = budget.override(
+                    floatProperty("scale.budget_us." + budget.operation),
+                    floatProperty("scale.budget_kb." + budget.operation));
+        }
+    }
+
+    @Test
+    public void operationsWithinBudgetAt10kRows() {
+        runAt(10_000);
+        assertTrue("Over budget: " + failures, failures.isEmpty());
+    }
+
+    @Test
+    public void operationsWithinBudgetAt100kRows() {
+        runAt(100_000);
+        assertTrue("Over budget: " + failures, failures.isEmpty());
+    }
+
+    private void runAt(int rowCount) {
+        String name = "benchmark_scale.db";
+        context.deleteDatabase(name);
+        DatabaseHelper helper = new DatabaseHelper(context, name);
+        try {
+            Random random = new Random(7);
+            List<License> seed = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                seed.add(sample(random));
+            }
+            long seedStart = System.nanoTime();
+            helper.insertLicenses(seed);
+            seed = null; // let the seed rows be collected before allocation is measured
+            System.out.println(String.format(Locale.US, "scale: seeded %d rows in %d ms",
+                    rowCount, (System.nanoTime() - seedStart) / 1_000_000));
+
+            Random ops = new Random(42);
+            measure(rowCount, "insertLicense", 500, () -> helper.insertLicense(sample(ops)));
+            measure(rowCount, "getLicense", 500, () -> helper.getLicense(1 + ops.nextInt(rowCount)));
+            measure(rowCount, "getLicenseCount", 200, helper::getLicenseCount);
+            measure(rowCount, "searchLicenses", 30, () -> helper.searchLicenses(QUERIES[ops.nextInt(QUERIES.length)]));
+            measure(rowCount, "getAllLicenses", 3, helper::getAllLicenses);
+
+            measure(rowCount, "searchLicensesFuzzy", 30, () -> helper.searchLicensesFuzzy(
+                    LicenseFilter.ALL.withFuzzy(true).withText(FUZZY_QUERIES[ops.nextInt(FUZZY_QUERIES.length)]),
+                    LicensePagedList.DEFAULT_PAGE_SIZE));
+            measureNameIndex(rowCount);
+            // One GROUP BY over the type/expiry index; the buckets are folded in Java
+            measure(rowCount, "timeline.weeks", 10,
+                    () -> helper.getExpiryTimeline(LicenseFilter.ALL, ExpiryTimeline.Granularity.WEEK));
+            measure(rowCount, "timeline.months", 10,
+                    () -> helper.getExpiryTimeline(LicenseFilter.ALL, ExpiryTimeline.Granularity.MONTH));
+            measure(rowCount, "export.csv", 3, () -> export(helper, LicenseExporter.Format.CSV));
+            measure(rowCount, "export.jsonl", 3, () -> export(helper, LicenseExporter.Format.JSON_LINES));
+            checkBackupRoundTrip(helper, rowCount);
+        } finally {
+            helper.close();
+            context.deleteDatabase(name);
+        }
+    }
+
+    // The seeded table has few distinct names, so the trigram index is also measured on
+    // its own with a distinct name per row, the worst case for its posting lists
+    private void measureNameIndex(int rowCount) {
+        Random random = new Random(11);
+        NameTrigramIndex index = new NameTrigramIndex();
+        String[] names = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            names[i] = distinctName(random) + " " + distinctName(random);
+            index.put(i + 1, names[i]);
+        }
+
+        Random ops = new Random(13);
+        measure(rowCount, "nameIndex.search", 30, () -> {
+            // A known name with its last letter changed
+            String name = names[ops.nextInt(rowCount)];
+            index.search(name.substring(0, name.length() - 1) + "x", LicensePagedList.DEFAULT_PAGE_SIZE);
+        });
+        long[] nextId = {rowCount + 1};
+        measure(rowCount, "nameIndex.put", 500, () -> index.put(nextId[0]++, distinctName(ops)));
+    }
+
+    private static String distinctName(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 2 + random.nextInt(2); i > 0; i--) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    // Back up the table, restore it into a second database and compare every row; a
+    // mismatch is reported as a failure like an operation over budget
+    private void checkBackupRoundTrip(DatabaseHelper helper, int rowCount) {
+        File file = new File(context.getCacheDir(), "benchmark_backup.lmbk");
+        String restoredName = "benchmark_restore.db";
+        context.deleteDatabase(restoredName);
+        DatabaseHelper restored = new DatabaseHelper(context, restoredName);
+        try {
+            measure(rowCount, "backup", 3, () -> {
+                try (FileChannel out = new FileOutputStream(file).getChannel()) {
+                    helper.backupLicenses(out);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            measure(rowCount, "restore", 3, () -> {
+                try (FileChannel in = new FileInputStream(file).getChannel()) {
+                    restored.restoreLicenses(new LicenseBackup.Reader(in));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            List<License> expected = helper.getAllLicenses();
+            List<License> actual = restored.getAllLicenses();
+            String mismatch = null;
+            if (expected.size() != actual.size()) {
+                mismatch = actual.size() + " of " + expected.size() + " rows";
+            }
+            for (int i = 0; mismatch == null && i < expected.size(); i++) {
+                if (!sameRow(expected.get(i), actual.get(i))) {
+                    mismatch = "row " + expected.get(i).getId() + " differs";
+                }
+            }
+            String line = String.format(Locale.US, "scale: backup round trip %7d rows %s",
+                    rowCount, mismatch == null ? "ok" : "MISMATCH: " + mismatch);
+            System.out.println(line);
+            if (mismatch != null) failures.add("backup@" + rowCount + ": " + mismatch);
+        } finally {
+            restored.close();
+            context.deleteDatabase(restoredName);
+            file.delete();
+        }
+    }
+
+    private static boolean sameRow(License a, License b) {
+        return a.getId() == b.getId() && a.getExpiryDay() == b.getExpiryDay()
+                && Objects.equals(a.getName(), b.getName()) && Objects.equals(a.getType(), b.getType())
+                && Objects.equals(a.getExpiryDate(), b.getExpiryDate())
+                && Objects.equals(a.getDescription(), b.getDescription());
+    }
+
+    // Full export through the same UTF-8 writer stack as LicenseRepository, into a sink
+    private static void export(DatabaseHelper helper, LicenseExporter.Format format) {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new OutputStream() {
+            @Override
+            public void write(int b) {}
+
+            @Override
+            public void write(byte[] b, int off, int len) {}
+        }, StandardCharsets.UTF_8), 64 * 1024)) {
+            helper.exportLicenses(new LicenseExporter(out, format), null, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void measure(int rowCount, String operation, int iterations, Runnable body) {
+        // Warm up the statement caches and the page cache first
+        for (int i = 0; i < Math.min(iterations, 5); i++) {
+            body.run();
+        }
+
+        // Robolectric's SystemClock is simulated, so time with the JVM's clock
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            body.run();
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / iterations;
+        long allocatedAfter = allocatedBytes();
+        double kilobytes = allocatedBefore < 0 || allocatedAfter < 0
+                ? -1 : (allocatedAfter - allocatedBefore) / 1024.0 / iterations;
+
+        Budget budget = budgetFor(operation);
+        double microsBudget = budget.micros(rowCount);
+        double kilobytesBudget = budget.kilobytes(rowCount);
+        boolean overTime = micros > microsBudget;
+        boolean overAllocation = kilobytes > kilobytesBudget;
+
+        String line = String.format(Locale.US,
+                "scale: %-19s %7d rows %10.1f us/op (budget %.0f) %9.1f KB/op (budget %.0f) %s",
+                operation, rowCount, micros, microsBudget, kilobytes, kilobytesBudget,
+                overTime || overAllocation ? "OVER BUDGET" : "ok");
+        System.out.println(line);
+        if (overTime || overAllocation) {
+            failures.add(String.format(Locale.US, "%s@%d: %.0f us, %.0f KB", operation, rowCount, micros, kilobytes));
+        }
+    }
+
+    private Budget budgetFor(String operation) {
+        for (Budget budget : budgets) {
+            if (budget.operation.equals(operation)) return budget;
+        }
+        throw new IllegalArgumentException("No budget for " + operation);
+    }
+
+    // Bytes allocated by the test thread so far, or -1 if the JVM doesn't count them.
+    // Every operation runs on this thread, including the SQLite calls.
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // A -Dscale.* override forwarded by Gradle, or -1 if not set
+    private static float floatProperty(String name) {
+        String value = System.getProperty(name);
+        return value != null ? Float.parseFloat(value) : -1;
+    }
+
+    private static License sample(Random random) {
+        String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " +
+                LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        String expiry = EpochDay.format(EpochDay.today() - 365 + random.nextInt(3 * 365));
+        String notes = random.nextInt(4) == 0 ? "Renewal booked" : null;
+        return new License(name, TYPES[random.nextInt(TYPES.length)], expiry, notes);
+    }
+
+    // Latency (microseconds) and allocation (KB) allowed per operation: a fixed part plus
+    // a part per 1,000 rows in the table
+    private static final class Budget {
+        final String operation;
+        final double micros;
+        final double microsPerThousandRows;
+        final double kilobytes;
+        final double kilobytesPerThousandRows;
+
+        Budget(String operation, double micros, double microsPerThousandRows,
+               double kilobytes, double kilobytesPerThousandRows) {
+            this.operation = operation;
+            this.micros = micros;
+            this.microsPerThousandRows = microsPerThousandRows;
+            this.kilobytes = kilobytes;
+            this.kilobytesPerThousandRows = kilobytesPerThousandRows;
+        }
+
+        // An override replaces the whole budget with a flat value for every size
+        Budget override(float flatMicros, float flatKilobytes) {
+            return new Budget(operation,
+                    flatMicros >= 0 ? flatMicros : micros, flatMicros >= 0 ? 0 : microsPerThousandRows,
+                    flatKilobytes >= 0 ? flatKilobytes : kilobytes, flatKilobytes >= 0 ? 0 : kilobytesPerThousandRows);
+        }
+
+        double micros(int rows) {
+            return micros + microsPerThousandRows * rows / 1000.0;
+        }
+
+        double kilobytes(int rows) {
+            return kilobytes + kilobytesPerThousandRows * rows / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.licensemanager;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Backup and restore through DatabaseHelper: a round trip keeps every id and field, and
+ * a corrupt or truncated backup fails without touching the rows already in the table.
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class LicenseBackupTest {
+    private static final String SOURCE_DB = "backup_source.db";
+    private static final String TARGET_DB = "backup_target.db";
+
+    private Context context;
+    private DatabaseHelper source;
+    private DatabaseHelper target;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(TARGET_DB);
+        source = new DatabaseHelper(context, SOURCE_DB);
+        target = new DatabaseHelper(context, TARGET_DB);
+
+        source.insertLicense(new License("John Smith", "DGSC", "2025-03-14", "Renewal lodged"));
+        long removed = source.insertLicense(new License("Removed Row", "Forklift", "2024-01-01", null));
+        source.insertLicense(new License("\u00C9mile Z\u00FCrcher", "Shotfirer", "2026-11-02", "Notes \u2013 site B"));
+        // An expiry date that doesn't parse is stored with a NULL expiry_day
+        source.insertLicense(new License("Sarah Jones", "Forklift", "n/a", null));
+        source.insertLicense(new License("Olivia Taylor", "DGSC", "2025-12-31", ""));
+        // A gap in the ids, so a restore that renumbered rows would not match
+        source.deleteLicense(removed);
+
+        target.insertLicense(new License("Existing Row", "Forklift", "2027-06-30", "Kept on failure"));
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+        target.close();
+        context.deleteDatabase(SOURCE_DB);
+        context.deleteDatabase(TARGET_DB);
+    }
+
+    @Test
+    public void restoreKeepsIdsAndFields() throws IOException {
+        byte[] backup = backup(source);
+
+        assertEquals(4, target.restoreLicenses(reader(backup)));
+
+        List<License> expected = source.getAllLicenses();
+        List<License> actual = target.getAllLicenses();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameRow(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void flippedByteFailsChecksumAndKeepsRows() throws IOException {
+        byte[] backup = backup(source);
+        // Inside a name, so every record still parses and only the checksum catches it
+        int offset = indexOf(backup, "Sarah".getBytes(StandardCharsets.UTF_8));
+        assertTrue(offset >= 0);
+        backup[offset] ^= 0x20;
+        List<License> before = target.getAllLicenses();
+
+        IOException error = assertThrows(IOException.class, () -> target.restoreLicenses(reader(backup)));
+
+        assertTrue(error.getMessage(), error.getMessage().contains("checksum"));
+        assertUnchanged(before, target.getAllLicenses());
+    }
+
+    @Test
+    public void truncatedBackupFailsAndKeepsRows() throws IOException {
+        byte[] backup = backup(source);
+        byte[] truncated = Arrays.copyOf(backup, backup.length / 2);
+        List<License> before = target.getAllLicenses();
+
+        assertThrows(IOException.class, () -> target.restoreLicenses(reader(truncated)));
+
+        assertUnchanged(before, target.getAllLicenses());
+    }
+
+    private static byte[] backup(DatabaseHelper helper) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (WritableByteChannel out = Channels.newChannel(bytes)) {
+            helper.backupLicenses(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static LicenseBackup.Reader reader(byte[] backup) throws IOException {
+        return new LicenseBackup.Reader(Channels.newChannel(new ByteArrayInputStream(backup)));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < part.length && bytes[i + j] == part[j]) j++;
+            if (j == part.length) return i;
+        }
+        return -1;
+    }
+
+    private static void assertUnchanged(List<License> before, List<License> after) {
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertSameRow(before.get(i), after.get(i));
+        }
+    }
+
+    private static void assertSameRow(License expected, License actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getExpiryDate(), actual.getExpiryDate());
+        assertEquals(expected.getExpiryDay(), actual.getExpiryDay());
+        assertEquals(expected.getDescription(), actual.getDescription());
+    }
+}
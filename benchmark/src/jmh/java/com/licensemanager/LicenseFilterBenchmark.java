@@ -0,0 +1,47 @@
+package com.licensemanager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory search over a loaded roster, as the paged list does when a query only
+ * narrows the one shown. Matching itself is allocation-free; the result list is not.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class LicenseFilterBenchmark {
+    // A short prefix, a two-word name and a type that matches a fifth of the roster
+    @Param({"jo", "sarah sm", "shotfirer"})
+    public String query;
+
+    @Benchmark
+    public List<License> filter(Roster roster) {
+        String[] terms = LicenseSearch.terms(query);
+        List<License> matches = new ArrayList<>();
+        for (License license : roster.licenses) {
+            if (LicenseSearch.matches(license, terms)) matches.add(license);
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public String[] parseTerms() {
+        return LicenseSearch.terms(query);
+    }
+}
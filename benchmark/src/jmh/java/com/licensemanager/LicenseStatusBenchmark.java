@@ -0,0 +1,63 @@
+package com.licensemanager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-license status and day arithmetic, as the adapter does on every bind. Each
+ * operation walks the whole roster, so allocation per operation should stay at zero.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LicenseStatusBenchmark {
+
+    @Benchmark
+    public int statusWithSharedToday(Roster roster) {
+        int today = roster.today;
+        int sum = 0;
+        for (License license : roster.licenses) {
+            sum += license.getStatus(today);
+        }
+        return sum;
+    }
+
+    // Reads the cached clock once per license, like the no-argument convenience methods
+    @Benchmark
+    public int isExpiredReadingClock(Roster roster) {
+        int expired = 0;
+        for (License license : roster.licenses) {
+            if (license.isExpired()) expired++;
+        }
+        return expired;
+    }
+
+    @Benchmark
+    public long daysUntilExpiry(Roster roster) {
+        int today = roster.today;
+        long sum = 0;
+        for (License license : roster.licenses) {
+            sum += license.getDaysUntilExpiry(today);
+        }
+        return sum;
+    }
+
+    // The one-off cost paid when a row is read or its date is edited
+    @Benchmark
+    public int parseExpiryDates(Roster roster) {
+        int sum = 0;
+        for (String date : roster.expiryDates) {
+            sum += EpochDay.parse(date);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,60 @@
+package com.licensemanager;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A synthetic roster shared by the benchmarks. Expiry dates are spread from a year in
+ * the past to two years ahead, so every status and threshold occurs; the seed is
+ * fixed so runs are comparable.
+ */
+@State(Scope.Benchmark)
+public class Roster {
+    private static final String[] FIRST_NAMES = {
+            "John", "Sarah", "Michael", "Emma", "David", "Olivia", "James", "Sophie", "Daniel", "Chloe",
+            "Liam", "Grace", "Noah", "Ella", "Jack", "Ruby", "Thomas", "Mia", "William", "Zoe"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Jones", "Williams", "Brown", "Wilson", "Taylor", "Johnson", "White", "Martin", "Anderson",
+            "Thompson", "Nguyen", "Thomas", "Walker", "Harris", "Lee", "Ryan", "Robinson", "Kelly", "King"};
+    private static final String[] TYPES = {"DGSC", "Shotfirer", "Forklift", "First Aid", "Working at Heights"};
+    private static final String[] NOTES = {null, "", "Renewal booked", "Site induction pending", "Night shift"};
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    public List<License> licenses;
+    public String[] expiryDates;
+    public int today;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        today = EpochDay.today();
+
+        // One string per distinct day, as rows read from the database would share little
+        // else; names and types come from small pools like a real site's roster
+        int spanDays = 3 * 365;
+        String[] dates = new String[spanDays];
+        for (int i = 0; i < spanDays; i++) {
+            dates[i] = EpochDay.format(today - 365 + i);
+        }
+
+        licenses = new ArrayList<>(size);
+        expiryDates = new String[size];
+        for (int i = 0; i < size; i++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " +
+                    LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String date = dates[random.nextInt(spanDays)];
+            licenses.add(new License(i + 1, name, TYPES[random.nextInt(TYPES.length)], date,
+                    NOTES[random.nextInt(NOTES.length)]));
+            expiryDates[i] = date;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.licensemanager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dashboard totals computed from loaded licenses. The app counts these in SQL; this
+ * is the in-memory baseline that query is measured against.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StatisticsBenchmark {
+
+    @Benchmark
+    public StatusCounts statusCounts(Roster roster) {
+        int today = roster.today;
+        int expiring = 0;
+        int expired = 0;
+        for (License license : roster.licenses) {
+            switch (license.getStatus(today)) {
+                case License.STATUS_EXPIRED:
+                    expired++;
+                    break;
+                case License.STATUS_EXPIRING_SOON:
+                    expiring++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new StatusCounts(roster.licenses.size(), expiring, expired);
+    }
+}
@@ -0,0 +1,45 @@
+package com.licensemanager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notification threshold arithmetic from ExpiryThresholds: the next due day across the
+ * roster (what the scheduler asks SQL for) and per-license reconciliation after a write.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ThresholdBenchmark {
+
+    @Benchmark
+    public int nextDueDay(Roster roster) {
+        int fromDay = roster.today;
+        int next = Integer.MAX_VALUE;
+        for (License license : roster.licenses) {
+            int day = ExpiryThresholds.nextThresholdDay(license.getExpiryDay(), fromDay);
+            if (day != EpochDay.NONE && day < next) next = day;
+        }
+        return next;
+    }
+
+    // Licenses with a threshold falling exactly on the day, as a fired alarm collects them
+    @Benchmark
+    public int dueToday(Roster roster) {
+        int today = roster.today;
+        int due = 0;
+        for (License license : roster.licenses) {
+            if (ExpiryThresholds.nextThresholdDay(license.getExpiryDay(), today) == today) due++;
+        }
+        return due;
+    }
+}
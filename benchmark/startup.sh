@@ -0,0 +1,57 @@
+#!/bin/sh
+# Cold-start benchmark for MainActivity on a connected device or emulator.
+#
+# Each run force-stops the app and starts it again, then records:
+#   - time to first frame: TotalTime reported by `am start -W`
+#   - time to full display: the system's "Fully drawn" line, logged when MainActivity
+#     calls reportFullyDrawn() after the real list and counts are on screen
+# and prints the median and worst of both. Install a build first, e.g.
+#   ./gradlew :app:installDebug && benchmark/startup.sh 20
+set -e
+
+PACKAGE=com.licensemanager
+ACTIVITY=$PACKAGE/.MainActivity
+RUNS=${1:-10}
+
+# "+1s234ms" or "+845ms" -> milliseconds
+to_millis() {
+    echo "$1" | sed -n 's/.*+\(\([0-9]*\)s\)\{0,1\}\([0-9]*\)ms.*/\2 \3/p' |
+        awk '{ print ($2 == "" ? $1 : $1 * 1000 + $2) }'
+}
+
+first_frame=""
+full_display=""
+i=1
+while [ "$i" -le "$RUNS" ]; do
+    adb shell am force-stop "$PACKAGE"
+    sleep 1
+    adb logcat -c
+
+    ttff=$(adb shell am start -W -n "$ACTIVITY" | tr -d '\r' | awk -F': ' '/^TotalTime/ { print $2 }')
+
+    ttfd=""
+    tries=0
+    while [ -z "$ttfd" ] && [ "$tries" -lt 20 ]; do
+        line=$(adb logcat -d | tr -d '\r' | grep "Fully drawn $ACTIVITY" | tail -n 1 || true)
+        [ -n "$line" ] && ttfd=$(to_millis "$line")
+        [ -z "$ttfd" ] && sleep 0.5
+        tries=$((tries + 1))
+    done
+
+    echo "run $i: first frame ${ttff:-?} ms, fully drawn ${ttfd:-?} ms"
+    [ -n "$ttff" ] && first_frame="$first_frame $ttff"
+    [ -n "$ttfd" ] && full_display="$full_display $ttfd"
+    i=$((i + 1))
+done
+
+summarize() {
+    echo "$2" | tr ' ' '\n' | grep . | sort -n |
+        awk -v label="$1" '{ v[NR] = $1 } END {
+            if (NR == 0) { print label ": no samples"; exit }
+            median = NR % 2 ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2
+            printf "%s: median %d ms, max %d ms (%d runs)\n", label, median, v[NR], NR
+        }'
+}
+
+summarize "time to first frame" "$first_frame"
+summarize "time to full display" "$full_display"